@@ -0,0 +1,109 @@
+package tp.vrp;
+
+import tp.vrp.Data.Instance;
+import tp.vrp.parser.XMLParser;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Instances used by the benchmarks: the bundled JDD files, named "JDD01" to "JDD12", and
+ * synthetic uniform instances, named by their number of nodes ("1000", "10000", ...).
+ */
+final class BenchmarkInstances {
+
+    /** Directory holding the bundled JDD*.xml files. */
+    static final Path INSTANCE_DIR = Path.of(System.getProperty("tp.vrp.instances", ".."));
+
+    private static final long SEED = 42;
+
+    private BenchmarkInstances() {
+    }
+
+    /**
+     * @param name A bundled instance name or a number of nodes.
+     * @return The XML file of the instance; synthetic instances are written to a temporary file.
+     */
+    static Path xmlFile(String name) {
+        if (!isSynthetic(name)) {
+            return INSTANCE_DIR.resolve(name + ".xml");
+        }
+        try {
+            Path file = Files.createTempFile("synthetic-" + name + "-", ".xml");
+            file.toFile().deleteOnExit();
+            writeSynthetic(file, Integer.parseInt(name));
+            return file;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @param name A bundled instance name or a number of nodes.
+     * @return The parsed instance.
+     */
+    static Instance load(String name) {
+        XMLParser parser = new XMLParser();
+        parser.parseXMLFile(xmlFile(name).toString());
+        return parser.getInstance();
+    }
+
+    /**
+     * @return A reproducible random giant tour starting at the depot, as node IDs.
+     */
+    static List<Integer> randomTour(Instance instance) {
+        List<Integer> tour = new ArrayList<>(instance.size());
+        tour.add(instance.getDepotId());
+        for (int i = 0; i < instance.size(); i++) {
+            if (i != instance.getDepotIndex()) {
+                tour.add(instance.getIdOf(i));
+            }
+        }
+        Collections.shuffle(tour.subList(1, tour.size()), new Random(SEED));
+        return tour;
+    }
+
+    private static boolean isSynthetic(String name) {
+        return !name.isEmpty() && name.chars().allMatch(Character::isDigit);
+    }
+
+    /**
+     * Writes a uniform random instance in the JDD format: customers 1..n-1 in a 100x100 square,
+     * demands between 1 and 30, and the depot as node n at the centre.
+     */
+    private static void writeSynthetic(Path file, int nodes) throws IOException {
+        Random random = new Random(SEED);
+        try (BufferedWriter out = Files.newBufferedWriter(file)) {
+            out.write("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n<instance>\n");
+            out.write("    <info>\n        <dataset>synthetic</dataset>\n        <name>SYN" + nodes + "</name>\n    </info>\n");
+            out.write("    <network>\n        <nodes>\n");
+            for (int id = 1; id <= nodes; id++) {
+                boolean depot = id == nodes;
+                double x = depot ? 50 : random.nextInt(100);
+                double y = depot ? 50 : random.nextInt(100);
+                out.write(String.format(Locale.ROOT,
+                        "            <node id=\"%d\" type=\"%d\">\n                <cx>%.1f</cx>\n                <cy>%.1f</cy>\n            </node>\n",
+                        id, depot ? 0 : 1, x, y));
+            }
+            out.write("        </nodes>\n        <euclidean/>\n        <decimals>0</decimals>\n    </network>\n");
+            out.write("    <fleet>\n        <vehicle_profile type=\"0\">\n");
+            out.write("            <departure_node>" + nodes + "</departure_node>\n            <arrival_node>" + nodes + "</arrival_node>\n");
+            out.write("            <capacity>200.0</capacity>\n        </vehicle_profile>\n    </fleet>\n");
+            out.write("    <requests>\n");
+            for (int id = 1; id < nodes; id++) {
+                out.write(String.format(Locale.ROOT,
+                        "        <request id=\"%d\" node=\"%d\">\n            <quantity>%.1f</quantity>\n        </request>\n",
+                        id - 1, id, (double) (1 + random.nextInt(30))));
+            }
+            out.write("    </requests>\n</instance>\n");
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package tp.vrp;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import tp.vrp.Data.Node;
+import tp.vrp.parser.XMLParser;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of {@link XMLParser#parseXMLFile(String)} on the bundled and synthetic instances,
+ * with and without building the {@link Node} list.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ParserBenchmark {
+
+    @Param({"JDD01", "JDD02", "JDD03", "JDD04", "JDD05", "JDD11", "JDD12", "1000", "5000", "10000"})
+    public String instanceName;
+
+    private String file;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        file = BenchmarkInstances.xmlFile(instanceName).toString();
+    }
+
+    /**
+     * Cursor parse into the primitive arrays only; the node count is returned so that JMH consumes the result.
+     */
+    @Benchmark
+    public int parseXMLFile() {
+        XMLParser parser = new XMLParser();
+        parser.parseXMLFile(file);
+        return parser.getNodeCount();
+    }
+
+    /**
+     * Parse followed by the construction of the {@link Node} list kept for compatibility.
+     */
+    @Benchmark
+    public List<Node> parseXMLFileToNodeList() {
+        XMLParser parser = new XMLParser();
+        parser.parseXMLFile(file);
+        return parser.getNodeList();
+    }
+}
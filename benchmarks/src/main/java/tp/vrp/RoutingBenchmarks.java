@@ -0,0 +1,71 @@
+package tp.vrp;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import tp.vrp.Data.Instance;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the routing hot paths on the bundled and synthetic instances.
+ * Every benchmark starts from the same random giant tour, so results are comparable across commits.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RoutingBenchmarks {
+
+    @Param({"JDD01", "JDD02", "JDD03", "JDD04", "JDD05", "JDD11", "JDD12", "1000", "5000", "10000"})
+    public String instanceName;
+
+    private Instance instance;
+    private List<Integer> randomTour;
+    private Random random;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        instance = BenchmarkInstances.load(instanceName);
+        randomTour = BenchmarkInstances.randomTour(instance);
+        random = new Random(7);
+    }
+
+    @Benchmark
+    public double totalDistance() {
+        return NodeUtil.totalDistance(randomTour, instance.getDistances());
+    }
+
+    @Benchmark
+    public List<Integer> applyTwoOpt() {
+        return RouteOptimizationAlgorithms.applyTwoOpt(randomTour, instance);
+    }
+
+    @Benchmark
+    public List<List<Integer>> computeSolFromSegment() {
+        return Main.computeSolFromSegment(randomTour, instance);
+    }
+
+    @Benchmark
+    public List<List<Integer>> savings() {
+        return new SavingsAlgorithm(instance).calculateRoutes();
+    }
+
+    @Benchmark
+    public List<Integer> greedyRandomizedConstruction() {
+        return RouteOptimizationAlgorithms.greedyRandomizedConstruction(instance, 0.2, random);
+    }
+}
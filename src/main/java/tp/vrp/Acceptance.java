@@ -0,0 +1,151 @@
+package tp.vrp;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.function.Supplier;
+
+/**
+ * Acceptance criterion of the iterated local search: decides whether the search continues from
+ * the new local optimum or goes back to the current solution.
+ * <p>
+ * Criteria may keep state over a run (temperature, history), so each run of the search takes a
+ * fresh instance from a {@link Supplier}, such as the factories of this interface.
+ */
+public interface Acceptance {
+
+    /**
+     * Called once before the first iteration.
+     *
+     * @param initialCost The cost of the initial solution.
+     * @param iterations  The iteration budget of the run.
+     */
+    default void start(double initialCost, int iterations) {
+    }
+
+    /**
+     * @param candidate The cost of the new local optimum.
+     * @param current   The cost of the current solution.
+     * @param best      The cost of the best solution found so far.
+     * @param random    The random generator of the search.
+     * @return Whether the new local optimum becomes the current solution.
+     */
+    boolean accept(double candidate, double current, double best, Random random);
+
+    /**
+     * Always continues from the new local optimum (random walk).
+     */
+    static Supplier<Acceptance> always() {
+        return () -> (candidate, current, best, random) -> true;
+    }
+
+    /**
+     * Only continues from local optima that are not worse than the current solution.
+     */
+    static Supplier<Acceptance> betterOnly() {
+        return () -> (candidate, current, best, random) -> candidate <= current;
+    }
+
+    /**
+     * Simulated annealing: a worse local optimum is accepted with probability
+     * exp(-(candidate - current) / T). The temperature starts so that a relative worsening of
+     * {@code startWorsening} is accepted with probability 1/2, and decreases geometrically to
+     * a thousandth of its initial value over the iteration budget.
+     *
+     * @param startWorsening The relative worsening accepted with probability 1/2 at the start, for instance 0.01.
+     */
+    static Supplier<Acceptance> simulatedAnnealing(double startWorsening) {
+        if (startWorsening <= 0) {
+            throw new IllegalArgumentException("The initial worsening must be positive: " + startWorsening);
+        }
+        return () -> new Acceptance() {
+            private double temperature;
+            private double cooling;
+
+            @Override
+            public void start(double initialCost, int iterations) {
+                temperature = -startWorsening * initialCost / Math.log(0.5);
+                cooling = Math.pow(0.001, 1.0 / Math.max(iterations, 1));
+            }
+
+            @Override
+            public boolean accept(double candidate, double current, double best, Random random) {
+                boolean accepted = candidate <= current
+                        || random.nextDouble() < Math.exp((current - candidate) / temperature);
+                temperature *= cooling;
+                return accepted;
+            }
+        };
+    }
+
+    /**
+     * Record-to-record travel: accepts local optima within a relative deviation of the best one.
+     *
+     * @param deviation The relative deviation from the best cost, for instance 0.01.
+     */
+    static Supplier<Acceptance> recordToRecord(double deviation) {
+        if (deviation < 0) {
+            throw new IllegalArgumentException("The deviation must not be negative: " + deviation);
+        }
+        return () -> (candidate, current, best, random) -> candidate <= best * (1 + deviation);
+    }
+
+    /**
+     * Late acceptance hill climbing: accepts a local optimum that is not worse than the current
+     * solution, or than the current solution of {@code length} iterations ago.
+     *
+     * @param length The length of the history.
+     */
+    static Supplier<Acceptance> lateAcceptance(int length) {
+        if (length < 1) {
+            throw new IllegalArgumentException("The history length must be positive: " + length);
+        }
+        return () -> new Acceptance() {
+            private final double[] history = new double[length];
+            private int iteration;
+
+            @Override
+            public void start(double initialCost, int iterations) {
+                Arrays.fill(history, initialCost);
+                iteration = 0;
+            }
+
+            @Override
+            public boolean accept(double candidate, double current, double best, Random random) {
+                int slot = iteration++ % length;
+                boolean accepted = candidate <= current || candidate <= history[slot];
+                history[slot] = accepted ? candidate : current;
+                return accepted;
+            }
+        };
+    }
+
+    /**
+     * Threshold accepting: accepts local optima that are less than a threshold worse than the
+     * current solution. The threshold starts at a relative {@code startThreshold} of the initial
+     * cost and decreases linearly to zero over the iteration budget.
+     *
+     * @param startThreshold The initial threshold, relative to the initial cost, for instance 0.01.
+     */
+    static Supplier<Acceptance> threshold(double startThreshold) {
+        if (startThreshold < 0) {
+            throw new IllegalArgumentException("The threshold must not be negative: " + startThreshold);
+        }
+        return () -> new Acceptance() {
+            private double threshold;
+            private double step;
+
+            @Override
+            public void start(double initialCost, int iterations) {
+                threshold = startThreshold * initialCost;
+                step = threshold / Math.max(iterations, 1);
+            }
+
+            @Override
+            public boolean accept(double candidate, double current, double best, Random random) {
+                boolean accepted = candidate - current <= threshold;
+                threshold = Math.max(0, threshold - step);
+                return accepted;
+            }
+        };
+    }
+}
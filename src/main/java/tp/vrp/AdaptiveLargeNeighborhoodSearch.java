@@ -0,0 +1,567 @@
+package tp.vrp;
+
+import tp.vrp.Data.DistanceMatrix;
+import tp.vrp.Data.Instance;
+import tp.vrp.Data.NeighborLists;
+import tp.vrp.Data.RouteState;
+import tp.vrp.Data.Solution;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Adaptive large neighbourhood search (Ropke and Pisinger, 2006) on a multi-route solution.
+ * <p>
+ * Each iteration removes customers from a copy of the current solution with a destroy operator,
+ * inserts them back with a repair operator, and accepts the result with a simulated annealing
+ * criterion. Operators are drawn by roulette wheel; after every segment of
+ * {@link #SEGMENT_LENGTH} iterations, the weight of each operator moves towards the average score
+ * it earned: {@link #SCORE_BEST} for a new best solution, {@link #SCORE_BETTER} for an
+ * improvement of the current solution, {@link #SCORE_ACCEPTED} for an accepted worse one.
+ * <p>
+ * Built-in destroy operators are random, worst, related (Shaw) and route removal; built-in repair
+ * operators are greedy insertion and regret-2 and regret-3 insertion. Other operators can be
+ * added with {@link #addDestroy} and {@link #addRepair}. Not thread-safe.
+ */
+public final class AdaptiveLargeNeighborhoodSearch {
+
+    /** Removes customers from a solution. */
+    @FunctionalInterface
+    public interface Destroy {
+        /**
+         * @param solution The solution, modified in place.
+         * @param count    The number of customers to remove.
+         * @param random   The random generator of the search.
+         */
+        void destroy(PartialSolution solution, int count, Random random);
+    }
+
+    /** Inserts every removed customer back into a solution. */
+    @FunctionalInterface
+    public interface Repair {
+        /**
+         * @param solution The solution, modified in place.
+         * @param random   The random generator of the search.
+         */
+        void repair(PartialSolution solution, Random random);
+    }
+
+    public static final int SEGMENT_LENGTH = 100;
+    public static final double SCORE_BEST = 33;
+    public static final double SCORE_BETTER = 9;
+    public static final double SCORE_ACCEPTED = 13;
+
+    private static final double EPSILON = 1e-9;
+    // Relative worsening accepted with probability 1/2 at the start of the annealing
+    private static final double START_WORSENING = 0.05;
+    // Randomisation exponents of worst and related removal (higher is more deterministic)
+    private static final double WORST_DETERMINISM = 3;
+    private static final double RELATED_DETERMINISM = 6;
+
+    private final Instance instance;
+    private final DistanceMatrix distances;
+    private final Random random;
+
+    private final List<String> destroyNames = new ArrayList<>();
+    private final List<Destroy> destroyOperators = new ArrayList<>();
+    private final List<String> repairNames = new ArrayList<>();
+    private final List<Repair> repairOperators = new ArrayList<>();
+    private double[] destroyWeights = new double[0];
+    private double[] repairWeights = new double[0];
+
+    private double reaction = 0.1;
+    private double minRemovedFraction = 0.05;
+    private double maxRemovedFraction = 0.3;
+    private int maxRemoved = 100;
+
+    // Buffers of the built-in operators
+    private final int[] candidates;
+    private final double[] keys;
+
+    /**
+     * Creates a search with the built-in operators.
+     *
+     * @param instance The instance to solve.
+     * @param seed     The seed of the random generator.
+     */
+    public AdaptiveLargeNeighborhoodSearch(Instance instance, long seed) {
+        this.instance = instance;
+        this.distances = instance.getDistances();
+        this.random = new Random(seed);
+        this.candidates = new int[instance.size()];
+        this.keys = new double[instance.size()];
+
+        addDestroy("random", this::randomRemoval);
+        addDestroy("worst", this::worstRemoval);
+        addDestroy("related", this::relatedRemoval);
+        addDestroy("route", this::routeRemoval);
+        addRepair("greedy", new RegretInsertion(1));
+        addRepair("regret-2", new RegretInsertion(2));
+        addRepair("regret-3", new RegretInsertion(3));
+    }
+
+    /**
+     * Adds a destroy operator, with the initial weight 1.
+     */
+    public void addDestroy(String name, Destroy operator) {
+        destroyNames.add(name);
+        destroyOperators.add(operator);
+        destroyWeights = Arrays.copyOf(destroyWeights, destroyOperators.size());
+        destroyWeights[destroyWeights.length - 1] = 1;
+    }
+
+    /**
+     * Adds a repair operator, with the initial weight 1.
+     */
+    public void addRepair(String name, Repair operator) {
+        repairNames.add(name);
+        repairOperators.add(operator);
+        repairWeights = Arrays.copyOf(repairWeights, repairOperators.size());
+        repairWeights[repairWeights.length - 1] = 1;
+    }
+
+    /**
+     * Sets how many customers each iteration removes: a random number between the two fractions
+     * of the number of customers, at most {@code maxRemoved}.
+     */
+    public void setRemovedRange(double minFraction, double maxFraction, int maxRemoved) {
+        if (minFraction <= 0 || maxFraction < minFraction || maxFraction > 1 || maxRemoved < 1) {
+            throw new IllegalArgumentException("Invalid removal range: " + minFraction + ", " + maxFraction + ", " + maxRemoved);
+        }
+        this.minRemovedFraction = minFraction;
+        this.maxRemovedFraction = maxFraction;
+        this.maxRemoved = maxRemoved;
+    }
+
+    /**
+     * @param reaction How fast the weights follow the scores, between 0 (never) and 1 (last segment only).
+     */
+    public void setReaction(double reaction) {
+        if (reaction < 0 || reaction > 1) {
+            throw new IllegalArgumentException("The reaction factor must be between 0 and 1: " + reaction);
+        }
+        this.reaction = reaction;
+    }
+
+    /**
+     * Runs the search from a set of routes.
+     *
+     * @param initialRoutes The initial routes, as lists of node IDs starting and ending at the depot.
+     * @param maxIterations The number of destroy and repair iterations.
+     * @return The best solution found.
+     */
+    public Solution solve(List<List<Integer>> initialRoutes, int maxIterations) {
+        PartialSolution current = new PartialSolution(instance);
+        PartialSolution candidate = new PartialSolution(instance);
+        PartialSolution best = new PartialSolution(instance);
+        current.load(initialRoutes);
+        best.copyFrom(current);
+        double currentCost = current.cost();
+        double bestCost = currentCost;
+        SearchMetrics.recordBest(bestCost);
+
+        // The temperature falls to a thousandth of its initial value over the run
+        double temperature = -START_WORSENING * currentCost / Math.log(0.5);
+        double cooling = Math.pow(0.001, 1.0 / Math.max(maxIterations, 1));
+
+        int customers = instance.size() - 1;
+        int minCount = Math.max(1, Math.min(maxRemoved, (int) Math.ceil(minRemovedFraction * customers)));
+        int maxCount = Math.max(minCount, Math.min(maxRemoved, (int) Math.ceil(maxRemovedFraction * customers)));
+
+        double[] destroyScores = new double[destroyOperators.size()];
+        int[] destroyUses = new int[destroyOperators.size()];
+        double[] repairScores = new double[repairOperators.size()];
+        int[] repairUses = new int[repairOperators.size()];
+
+        for (int iteration = 1; iteration <= maxIterations; iteration++) {
+            int d = roulette(destroyWeights);
+            int r = roulette(repairWeights);
+            int count = minCount + random.nextInt(maxCount - minCount + 1);
+
+            candidate.copyFrom(current);
+            destroyOperators.get(d).destroy(candidate, Math.min(count, customers), random);
+            repairOperators.get(r).repair(candidate, random);
+            if (candidate.removedCount() > 0) {
+                throw new IllegalStateException("Repair operator " + repairNames.get(r) + " left customers unrouted");
+            }
+            candidate.dropEmptyRoutes();
+            double candidateCost = candidate.cost();
+
+            double score = 0;
+            if (candidateCost < bestCost - EPSILON) {
+                score = SCORE_BEST;
+            } else if (candidateCost < currentCost - EPSILON) {
+                score = SCORE_BETTER;
+            } else if (candidateCost > currentCost + EPSILON
+                    && random.nextDouble() < Math.exp((currentCost - candidateCost) / temperature)) {
+                score = SCORE_ACCEPTED;
+            }
+            if (score > 0) {
+                PartialSolution previous = current;
+                current = candidate;
+                candidate = previous;
+                currentCost = candidateCost;
+                if (score == SCORE_BEST) {
+                    best.copyFrom(current);
+                    bestCost = currentCost;
+                    SearchMetrics.recordBest(bestCost);
+                    SolverEvents.improvement(instance, "ALNS", bestCost);
+                }
+            }
+            destroyScores[d] += score;
+            destroyUses[d]++;
+            repairScores[r] += score;
+            repairUses[r]++;
+
+            if (iteration % SEGMENT_LENGTH == 0) {
+                updateWeights(destroyWeights, destroyScores, destroyUses);
+                updateWeights(repairWeights, repairScores, repairUses);
+            }
+            temperature *= cooling;
+        }
+
+        List<List<Integer>> routes = best.toRoutes();
+        List<Integer> giantTour = new ArrayList<>(instance.size());
+        giantTour.add(instance.getDepotId());
+        for (List<Integer> route : routes) {
+            giantTour.addAll(route.subList(1, route.size() - 1));
+        }
+        return new Solution(giantTour, routes, bestCost);
+    }
+
+    /**
+     * @return The current weight of every operator, destroy operators first, by name.
+     */
+    public Map<String, Double> getWeights() {
+        Map<String, Double> weights = new LinkedHashMap<>();
+        for (int i = 0; i < destroyNames.size(); i++) {
+            weights.put(destroyNames.get(i), destroyWeights[i]);
+        }
+        for (int i = 0; i < repairNames.size(); i++) {
+            weights.put(repairNames.get(i), repairWeights[i]);
+        }
+        return weights;
+    }
+
+    private int roulette(double[] weights) {
+        double total = 0;
+        for (double weight : weights) {
+            total += weight;
+        }
+        double draw = random.nextDouble() * total;
+        for (int i = 0; i < weights.length - 1; i++) {
+            draw -= weights[i];
+            if (draw < 0) {
+                return i;
+            }
+        }
+        return weights.length - 1;
+    }
+
+    /**
+     * Moves the weights towards the average score of the segment, and resets the scores.
+     */
+    private void updateWeights(double[] weights, double[] scores, int[] uses) {
+        for (int i = 0; i < weights.length; i++) {
+            if (uses[i] > 0) {
+                // Operators keep a small weight so that they can come back
+                weights[i] = Math.max(0.01, (1 - reaction) * weights[i] + reaction * scores[i] / uses[i]);
+            }
+            scores[i] = 0;
+            uses[i] = 0;
+        }
+    }
+
+    /**
+     * Removes customers drawn uniformly.
+     */
+    private void randomRemoval(PartialSolution solution, int count, Random random) {
+        int size = routedCustomers(solution);
+        for (int i = 0; i < count && size > 0; i++) {
+            int pick = random.nextInt(size);
+            solution.remove(candidates[pick]);
+            candidates[pick] = candidates[--size];
+        }
+    }
+
+    /**
+     * Removes the customers whose removal saves the most length, with some randomisation.
+     */
+    private void worstRemoval(PartialSolution solution, int count, Random random) {
+        for (int i = 0; i < count; i++) {
+            int size = routedCustomers(solution);
+            if (size == 0) {
+                return;
+            }
+            for (int c = 0; c < size; c++) {
+                keys[c] = -solution.removalGain(candidates[c]);
+            }
+            solution.remove(selectByKey(size, (int) (Math.pow(random.nextDouble(), WORST_DETERMINISM) * size)));
+        }
+    }
+
+    /**
+     * Shaw removal: removes a random customer, then repeatedly a customer close to, and with a
+     * demand similar to, one of the customers already removed. Candidates are taken from the
+     * nearest neighbours of that customer.
+     */
+    private void relatedRemoval(PartialSolution solution, int count, Random random) {
+        int size = routedCustomers(solution);
+        if (size == 0) {
+            return;
+        }
+        int first = solution.removedCount();
+        solution.remove(candidates[random.nextInt(size)]);
+
+        NeighborLists neighbors = instance.getNeighbors(NeighborLists.DEFAULT_SIZE);
+        double maxDemand = 0;
+        for (int c = 0; c < instance.size(); c++) {
+            maxDemand = Math.max(maxDemand, instance.getDemand(c));
+        }
+        for (int i = 1; i < count; i++) {
+            int seed = solution.removed(first + random.nextInt(solution.removedCount() - first));
+            double radius = distances.get(seed, neighbors.get(seed, neighbors.getK() - 1));
+            int related = 0;
+            for (int r = 0; r < neighbors.getK(); r++) {
+                int c = neighbors.get(seed, r);
+                if (solution.routeOf(c) < 0) {
+                    continue;
+                }
+                candidates[related] = c;
+                keys[related] = distances.get(seed, c) / Math.max(radius, EPSILON)
+                        + Math.abs(instance.getDemand(seed) - instance.getDemand(c)) / Math.max(maxDemand, EPSILON);
+                related++;
+            }
+            if (related == 0) {
+                size = routedCustomers(solution);
+                if (size == 0) {
+                    return;
+                }
+                solution.remove(candidates[random.nextInt(size)]);
+                continue;
+            }
+            solution.remove(selectByKey(related, (int) (Math.pow(random.nextDouble(), RELATED_DETERMINISM) * related)));
+        }
+    }
+
+    /**
+     * Removes whole random routes until at least {@code count} customers are removed.
+     */
+    private void routeRemoval(PartialSolution solution, int count, Random random) {
+        int removed = 0;
+        int routes = solution.routeCount();
+        // Routes emptied by this operator stay in place but have no customer left
+        for (int attempt = 0; removed < count && attempt < 4 * routes; attempt++) {
+            RouteState route = solution.route(random.nextInt(routes));
+            while (route.length() > 0) {
+                solution.remove(route.get(route.length()));
+                removed++;
+            }
+        }
+    }
+
+    /**
+     * Fills {@link #candidates} with the routed customers.
+     *
+     * @return Their number.
+     */
+    private int routedCustomers(PartialSolution solution) {
+        int size = 0;
+        for (int r = 0; r < solution.routeCount(); r++) {
+            RouteState route = solution.route(r);
+            for (int p = 1; p <= route.length(); p++) {
+                candidates[size++] = route.get(p);
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Quickselect on the first entries of {@link #candidates} and {@link #keys}.
+     *
+     * @param size The number of entries.
+     * @param rank A rank between 0 and size - 1.
+     * @return The candidate with the given rank by increasing key; the entries are reordered.
+     */
+    private int selectByKey(int size, int rank) {
+        int low = 0;
+        int high = size - 1;
+        while (low < high) {
+            double pivot = keys[(low + high) >>> 1];
+            int i = low;
+            int j = high;
+            while (i <= j) {
+                while (keys[i] < pivot) {
+                    i++;
+                }
+                while (keys[j] > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    int candidate = candidates[i];
+                    candidates[i] = candidates[j];
+                    candidates[j] = candidate;
+                    double key = keys[i];
+                    keys[i] = keys[j];
+                    keys[j] = key;
+                    i++;
+                    j--;
+                }
+            }
+            if (rank <= j) {
+                high = j;
+            } else if (rank >= i) {
+                low = i;
+            } else {
+                break;
+            }
+        }
+        return candidates[rank];
+    }
+
+    /**
+     * Regret-k insertion; k = 1 is greedy insertion. At each step, the customer inserted is the one
+     * with the largest sum of differences between its best insertion cost and its k - 1 next
+     * best insertion costs into other routes, opening a new route being always possible.
+     * <p>
+     * The best insertion of every pending customer into every route is cached, and only the
+     * column of the route that received the last customer is recomputed, so a repair costs
+     * O(m · R) per inserted customer for m pending customers and R routes, plus the length of the
+     * modified route for each pending customer.
+     */
+    private final class RegretInsertion implements Repair {
+
+        private final int k;
+
+        // Cache, by pending slot and route: best insertion cost (infinite if the route is full) and position
+        private double[][] cost = new double[0][0];
+        private int[][] position = new int[0][0];
+        private int[] pending = new int[0];
+        private final double[] kBest;
+
+        RegretInsertion(int k) {
+            this.k = k;
+            this.kBest = new double[k];
+        }
+
+        @Override
+        public void repair(PartialSolution solution, Random random) {
+            int m = solution.removedCount();
+            if (m == 0) {
+                return;
+            }
+            int maxRoutes = solution.routeCount() + m;
+            if (cost.length < m || cost[0].length < maxRoutes) {
+                int rows = Math.max(m, cost.length);
+                int columns = Math.max(maxRoutes, cost.length == 0 ? 0 : cost[0].length);
+                cost = new double[rows][columns];
+                position = new int[rows][columns];
+            }
+            if (pending.length < m) {
+                pending = new int[m];
+            }
+            for (int s = 0; s < m; s++) {
+                pending[s] = solution.removed(s);
+            }
+            // Random order, so that ties are not always broken the same way
+            for (int s = m - 1; s > 0; s--) {
+                int other = random.nextInt(s + 1);
+                int tmp = pending[s];
+                pending[s] = pending[other];
+                pending[other] = tmp;
+            }
+            for (int s = 0; s < m; s++) {
+                for (int r = 0; r < solution.routeCount(); r++) {
+                    evaluate(solution, s, r);
+                }
+            }
+
+            int depot = instance.getDepotIndex();
+            while (m > 0) {
+                int routes = solution.routeCount();
+                int bestSlot = -1;
+                int bestRoute = -1;
+                double bestRegret = Double.NEGATIVE_INFINITY;
+                double bestInsertion = Double.POSITIVE_INFINITY;
+                for (int s = 0; s < m; s++) {
+                    int customer = pending[s];
+                    Arrays.fill(kBest, Double.POSITIVE_INFINITY);
+                    int cheapestRoute = routes; // New route
+                    double newRoute = 2 * distances.get(depot, customer);
+                    insertBest(newRoute);
+                    double cheapest = newRoute;
+                    for (int r = 0; r < routes; r++) {
+                        double c = cost[s][r];
+                        insertBest(c);
+                        if (c < cheapest) {
+                            cheapest = c;
+                            cheapestRoute = r;
+                        }
+                    }
+                    double regret = 0;
+                    for (int i = 1; i < k; i++) {
+                        regret += kBest[i] - kBest[0];
+                    }
+                    if (regret > bestRegret || regret == bestRegret && cheapest < bestInsertion) {
+                        bestRegret = regret;
+                        bestInsertion = cheapest;
+                        bestSlot = s;
+                        bestRoute = cheapestRoute;
+                    }
+                }
+
+                int customer = pending[bestSlot];
+                int p = bestRoute == routes ? 1 : position[bestSlot][bestRoute];
+                solution.insert(customer, bestRoute, p);
+                // Fill the slot with the last pending customer
+                m--;
+                pending[bestSlot] = pending[m];
+                System.arraycopy(cost[m], 0, cost[bestSlot], 0, routes);
+                System.arraycopy(position[m], 0, position[bestSlot], 0, routes);
+                for (int s = 0; s < m; s++) {
+                    evaluate(solution, s, bestRoute);
+                }
+            }
+        }
+
+        /**
+         * Inserts a cost into the sorted list of the k best costs, dropping the largest.
+         */
+        private void insertBest(double c) {
+            int i = k - 1;
+            if (c >= kBest[i]) {
+                return;
+            }
+            while (i > 0 && kBest[i - 1] > c) {
+                kBest[i] = kBest[i - 1];
+                i--;
+            }
+            kBest[i] = c;
+        }
+
+        /**
+         * Computes the best insertion of the customer of slot s into route r.
+         */
+        private void evaluate(PartialSolution solution, int s, int r) {
+            int customer = pending[s];
+            double best = Double.POSITIVE_INFINITY;
+            int bestPosition = -1;
+            if (solution.fits(customer, r)) {
+                int length = solution.route(r).length();
+                for (int p = 1; p <= length + 1; p++) {
+                    double c = solution.insertionCost(customer, r, p);
+                    if (c < best) {
+                        best = c;
+                        bestPosition = p;
+                    }
+                }
+            }
+            cost[s][r] = best;
+            position[s][r] = bestPosition;
+        }
+    }
+}
@@ -0,0 +1,244 @@
+package tp.vrp;
+
+import tp.vrp.Data.Instance;
+import tp.vrp.Data.Solution;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.Future;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * Solver bounded by wall-clock time rather than by iteration counts, which returns a usable plan
+ * whatever the instance size and publishes every new best solution as soon as it is found.
+ * <p>
+ * A run has three phases sharing one {@link Deadline}:
+ * <ol>
+ *     <li>the nearest neighbour tour is split and improved, which gives a first plan quickly;</li>
+ *     <li>{@link ParallelGrasp} builds tours for at most a share of the budget;</li>
+ *     <li>ILS starts, the first one from the best GRASP tour and the others from random tours,
+ *     run on the worker threads until the deadline.</li>
+ * </ol>
+ * Each giant tour is finished like in {@link MultiStartSolver}: split, local search on each route
+ * and inter-route moves. The searches stop early enough to leave time for this post-processing,
+ * estimated from the duration of the first phase, and the post-processing itself stops at the
+ * deadline, keeping the moves already applied. The time limit may still be exceeded by the
+ * duration of one split and of one move evaluation.
+ * <p>
+ * New best solutions are published to the subscribers through a {@link SubmissionPublisher}, so
+ * a slow subscriber does not hold the search back; a subscriber that lags by more than the
+ * buffer size misses intermediate solutions, but the final one is always returned by
+ * {@link #solve}. The publisher is closed at the end of the run, and a solver runs only once.
+ */
+public class AnytimeSolver implements Flow.Publisher<Solution> {
+
+    private final Instance instance;
+    private final int threads;
+    private final long seed;
+    private int maxIter = 1000;
+    private int maxIterWithoutImprovement = 100;
+    private double graspShare = 0.2;
+    private int graspIterWithoutImprovement = 100;
+    private SearchOptions options = SearchOptions.DEFAULT;
+
+    private final AtomicReference<Solution> best = new AtomicReference<>();
+    private final SubmissionPublisher<Solution> publisher = new SubmissionPublisher<>();
+    private boolean started;
+
+    /**
+     * @param instance The instance to solve.
+     * @param threads  The number of worker threads.
+     * @param seed     The seed from which the generator of each start is derived.
+     */
+    public AnytimeSolver(Instance instance, int threads, long seed) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("The number of threads must be positive: " + threads);
+        }
+        this.instance = instance;
+        this.threads = threads;
+        this.seed = seed;
+    }
+
+    /**
+     * Sets the iteration budget of each ILS start; starts follow one another until the deadline.
+     *
+     * @param maxIter The maximum number of ILS iterations.
+     * @param maxIterWithoutImprovement The maximum number of iterations without improvement before a start stops.
+     */
+    public void setIterations(int maxIter, int maxIterWithoutImprovement) {
+        this.maxIter = maxIter;
+        this.maxIterWithoutImprovement = maxIterWithoutImprovement;
+    }
+
+    /**
+     * @param share                     The maximum share of the time limit given to GRASP, between 0 and 1.
+     * @param maxIterWithoutImprovement The number of GRASP iterations without improvement after which ILS starts.
+     */
+    public void setGrasp(double share, int maxIterWithoutImprovement) {
+        if (share < 0 || share > 1) {
+            throw new IllegalArgumentException("The GRASP share must be between 0 and 1: " + share);
+        }
+        this.graspShare = share;
+        this.graspIterWithoutImprovement = maxIterWithoutImprovement;
+    }
+
+    /**
+     * Sets the local search of the GRASP, of the ILS starts and of the route improvement, and the acceptance criterion of the ILS.
+     */
+    public void setSearchOptions(SearchOptions options) {
+        if (options == null) {
+            throw new IllegalArgumentException("The search options must not be null");
+        }
+        this.options = options;
+    }
+
+    /**
+     * Subscribes to the new best solutions of the run. Each solution is better than the previous one.
+     */
+    @Override
+    public void subscribe(Flow.Subscriber<? super Solution> subscriber) {
+        publisher.subscribe(subscriber);
+    }
+
+    /**
+     * Calls the given action, on a thread of the common pool, for each new best solution of the run.
+     *
+     * @return A future completed when the run is over and all solutions have been consumed.
+     */
+    public CompletableFuture<Void> onImprovement(Consumer<? super Solution> action) {
+        return publisher.consume(action);
+    }
+
+    /**
+     * Runs the solver until the time limit.
+     *
+     * @param timeLimit The wall-clock time given to the run.
+     * @return The best solution found.
+     */
+    public Solution solve(Duration timeLimit) {
+        synchronized (this) {
+            if (started) {
+                throw new IllegalStateException("An anytime solver can only be run once");
+            }
+            started = true;
+        }
+        Deadline deadline = Deadline.after(timeLimit);
+        try {
+            long start = System.nanoTime();
+            offer(finish(Tour.fromIds(RouteOptimizationAlgorithms.dumbHeuristic(instance), instance), deadline));
+            // Keep twice the time of this first post-processing to finish the last tours
+            Deadline searchDeadline = deadline.minus(Duration.ofNanos(2 * (System.nanoTime() - start)));
+
+            Deadline graspDeadline = searchDeadline.earliest(Deadline.after(Duration.ofMillis((long) (graspShare * timeLimit.toMillis()))));
+            List<Integer> graspTour = null;
+            if (!graspDeadline.expired()) {
+                ParallelGrasp grasp = new ParallelGrasp(instance, threads, seed);
+                grasp.setSearchOptions(options);
+                graspTour = grasp.run(Integer.MAX_VALUE, graspIterWithoutImprovement, new ElitePool(10), graspDeadline);
+            }
+            if (graspTour != null) {
+                offer(finish(Tour.fromIds(graspTour, instance), deadline));
+            }
+
+            runStarts(graspTour, searchDeadline, deadline);
+        } finally {
+            publisher.close();
+        }
+        return best.get();
+    }
+
+    /**
+     * @return The best solution found so far, or {@code null} if the run has not produced any yet.
+     */
+    public Solution getBest() {
+        return best.get();
+    }
+
+    private void runStarts(List<Integer> graspTour, Deadline searchDeadline, Deadline deadline) {
+        AtomicInteger nextStart = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>(threads);
+            for (int w = 0; w < threads; w++) {
+                futures.add(executor.submit(() -> {
+                    while (!searchDeadline.expired()) {
+                        int i = nextStart.getAndIncrement();
+                        SolverEvents.MultiStartIteration event = new SolverEvents.MultiStartIteration();
+                        event.begin();
+                        Random random = new Random(startSeed(i));
+                        Tour tour;
+                        if (i == 0 && graspTour != null) {
+                            tour = Tour.fromIds(graspTour, instance);
+                        } else {
+                            tour = new Tour(instance);
+                            RouteOptimizationAlgorithms.randomHeuristic(tour, random);
+                        }
+                        tour = RouteOptimizationAlgorithms.iteratedLocalSearch(tour, maxIter, maxIterWithoutImprovement, random, options, searchDeadline);
+                        Solution solution = finish(tour, deadline);
+                        offer(solution);
+                        event.end();
+                        if (event.shouldCommit()) {
+                            event.set(instance, i, solution.getCost());
+                            event.commit();
+                        }
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Anytime solver interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("A start failed", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Turns a giant tour into routes and improves them until the deadline.
+     */
+    private Solution finish(Tour giantTour, Deadline deadline) {
+        giantTour.rotateToFront(instance.getDepotIndex());
+        List<List<Integer>> routes = new Split(instance).split(giantTour);
+        routes = RouteOptimizationAlgorithms.applyLocalSearchOnSol(routes, instance, options, deadline);
+        routes = new InterRouteSearch(instance).optimize(routes, deadline);
+        routes = RouteOptimizationAlgorithms.applyLocalSearchOnSol(routes, instance, options, deadline);
+        return new Solution(giantTour.toIds(), routes, NodeUtil.getRouteRes(NodeUtil.toRouteStates(routes, instance)));
+    }
+
+    /**
+     * Replaces the best solution and publishes it if the candidate is better. Synchronized so
+     * that subscribers receive strictly improving solutions.
+     */
+    private synchronized void offer(Solution candidate) {
+        if (!candidate.isBetterThan(best.get())) {
+            return;
+        }
+        best.set(candidate);
+        SearchMetrics.recordBest(candidate.getCost());
+        SolverEvents.improvement(instance, "anytime", candidate.getCost());
+        // Lagging subscribers miss this solution rather than blocking the search
+        publisher.offer(candidate, (subscriber, solution) -> false);
+    }
+
+    private long startSeed(int start) {
+        // SplitMix64 finaliser: decorrelates the seeds of consecutive starts
+        long z = seed + (start + 1) * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,103 @@
+package tp.vrp.Data;
+
+/**
+ * La classe DistanceMatrix précalcule les distances entre les nœuds d'une {@link Instance}.
+ * Chaque identifiant de nœud est associé à un indice dense, ce qui permet de servir
+ * une distance en temps constant sans parcourir la liste des nœuds.
+ */
+public class DistanceMatrix {
+
+    /**
+     * Nombre de nœuds au-delà duquel la matrice complète n'est plus stockée (n² doubles) :
+     * les distances sont alors recalculées à partir des coordonnées indexées.
+     */
+    public static final int MAX_STORED_SIZE = 2048;
+
+    private final int size;
+    private final int[] idOf;
+    private final int[] indexOf;
+    private final double[] x;
+    private final double[] y;
+    private final double[] distances;
+
+    /**
+     * Construit la matrice à partir des tableaux d'une {@link Instance}, partagés sans copie.
+     *
+     * @param x       L'abscisse de chaque nœud.
+     * @param y       L'ordonnée de chaque nœud.
+     * @param idOf    L'identifiant de chaque nœud.
+     * @param indexOf L'indice dense de chaque identifiant, -1 si absent.
+     */
+    DistanceMatrix(double[] x, double[] y, int[] idOf, int[] indexOf) {
+        this.size = idOf.length;
+        this.x = x;
+        this.y = y;
+        this.idOf = idOf;
+        this.indexOf = indexOf;
+
+        if (size <= MAX_STORED_SIZE) {
+            distances = new double[size * size];
+            for (int i = 0; i < size; i++) {
+                for (int j = i + 1; j < size; j++) {
+                    double d = compute(i, j);
+                    distances[i * size + j] = d;
+                    distances[j * size + i] = d;
+                }
+            }
+        } else {
+            distances = null;
+        }
+    }
+
+    private double compute(int i, int j) {
+        double dx = x[i] - x[j];
+        double dy = y[i] - y[j];
+        return Math.sqrt(dx * dx + dy * dy);
+    }
+
+    /**
+     * Récupère la distance entre deux nœuds désignés par leur indice dense.
+     *
+     * @param i L'indice du premier nœud.
+     * @param j L'indice du second nœud.
+     * @return La distance entre les deux nœuds.
+     */
+    public double get(int i, int j) {
+        return distances != null ? distances[i * size + j] : compute(i, j);
+    }
+
+    /**
+     * Récupère la distance entre deux nœuds désignés par leur identifiant.
+     *
+     * @param idA L'identifiant du premier nœud.
+     * @param idB L'identifiant du second nœud.
+     * @return La distance entre les deux nœuds.
+     */
+    public double distance(int idA, int idB) {
+        return get(indexOf[idA], indexOf[idB]);
+    }
+
+    /**
+     * Récupère l'indice dense associé à un identifiant de nœud.
+     *
+     * @param id L'identifiant du nœud.
+     * @return L'indice dense, ou -1 si l'identifiant est inconnu.
+     */
+    public int indexOf(int id) {
+        return id >= 0 && id < indexOf.length ? indexOf[id] : -1;
+    }
+
+    /**
+     * Récupère l'identifiant du nœud situé à un indice dense.
+     *
+     * @param index L'indice dense.
+     * @return L'identifiant du nœud.
+     */
+    public int idOf(int index) {
+        return idOf[index];
+    }
+
+    public int size() {
+        return size;
+    }
+}
@@ -0,0 +1,158 @@
+package tp.vrp.Data;
+
+import java.util.Arrays;
+
+/**
+ * La classe Instance représente une instance immuable du problème de routage de véhicules.
+ * Les données sont stockées sous forme de tableaux primitifs indexés par un indice dense
+ * (coordonnées, demandes), ce qui évite toute recherche d'objet dans les boucles critiques.
+ * Les identifiants du fichier XML sont convertis en indices via {@link #getIndexOf(int)}
+ * et inversement via {@link #getIdOf(int)}.
+ */
+public final class Instance {
+
+    private final String name;
+    private final int size;
+    private final double[] x;
+    private final double[] y;
+    private final double[] demand;
+    private final int depotIndex;
+    private final int[] idOf;
+    private final int[] indexOf;
+    private final double capacity;
+    private final DistanceMatrix distances;
+    private volatile NeighborLists neighbors;
+
+    /**
+     * Construit une instance à partir de tableaux indexés par indice dense.
+     * Les tableaux sont copiés, l'instance ne partage donc aucun état avec l'appelant.
+     *
+     * @param name       Le nom de l'instance.
+     * @param idOf       L'identifiant du nœud pour chaque indice.
+     * @param x          L'abscisse (cx) de chaque nœud.
+     * @param y          L'ordonnée (cy) de chaque nœud.
+     * @param demand     La quantité demandée par chaque nœud (0 pour le dépôt).
+     * @param depotIndex L'indice du dépôt.
+     * @param capacity   La capacité d'un véhicule.
+     */
+    public Instance(String name, int[] idOf, double[] x, double[] y, double[] demand, int depotIndex, double capacity) {
+        this.size = idOf.length;
+        if (x.length != size || y.length != size || demand.length != size) {
+            throw new IllegalArgumentException("Les tableaux de l'instance n'ont pas la même taille");
+        }
+        if (depotIndex < 0 || depotIndex >= size) {
+            throw new IllegalArgumentException("Indice de dépôt invalide : " + depotIndex);
+        }
+        this.name = name;
+        this.idOf = idOf.clone();
+        this.x = x.clone();
+        this.y = y.clone();
+        this.demand = demand.clone();
+        this.depotIndex = depotIndex;
+        this.capacity = capacity;
+
+        int maxId = -1;
+        for (int id : this.idOf) {
+            if (id < 0) {
+                throw new IllegalArgumentException("Identifiant de nœud négatif : " + id);
+            }
+            maxId = Math.max(maxId, id);
+        }
+        this.indexOf = new int[maxId + 1];
+        Arrays.fill(indexOf, -1);
+        for (int i = 0; i < size; i++) {
+            if (indexOf[this.idOf[i]] != -1) {
+                throw new IllegalArgumentException("Identifiant de nœud dupliqué : " + this.idOf[i]);
+            }
+            indexOf[this.idOf[i]] = i;
+        }
+
+        this.distances = new DistanceMatrix(this.x, this.y, this.idOf, this.indexOf);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return Le nombre de nœuds de l'instance, dépôt compris.
+     */
+    public int size() {
+        return size;
+    }
+
+    public double getX(int index) {
+        return x[index];
+    }
+
+    public double getY(int index) {
+        return y[index];
+    }
+
+    public double getDemand(int index) {
+        return demand[index];
+    }
+
+    public int getDepotIndex() {
+        return depotIndex;
+    }
+
+    public int getDepotId() {
+        return idOf[depotIndex];
+    }
+
+    public double getCapacity() {
+        return capacity;
+    }
+
+    public int getIdOf(int index) {
+        return idOf[index];
+    }
+
+    /**
+     * Récupère l'indice dense associé à un identifiant de nœud.
+     *
+     * @param id L'identifiant du nœud.
+     * @return L'indice dense, ou -1 si l'identifiant est inconnu.
+     */
+    public int getIndexOf(int id) {
+        return id >= 0 && id < indexOf.length ? indexOf[id] : -1;
+    }
+
+    /**
+     * Récupère la matrice des distances de l'instance, calculée une seule fois à la construction.
+     *
+     * @return La matrice des distances.
+     */
+    public DistanceMatrix getDistances() {
+        return distances;
+    }
+
+    /**
+     * Récupère les listes des k plus proches voisins. Seules les listes les plus longues déjà
+     * calculées sont conservées : une valeur de k plus petite est servie par leurs préfixes,
+     * et une valeur plus grande les recalcule puis les remplace.
+     *
+     * @param k Le nombre de voisins par nœud.
+     * @return Les listes de voisins.
+     */
+    public NeighborLists getNeighbors(int k) {
+        NeighborLists cached = neighbors;
+        int expected = Math.min(k, Math.max(size - 1, 0));
+        if (cached == null || cached.getK() < expected) {
+            cached = new NeighborLists(this, k);
+            neighbors = cached;
+        }
+        return cached.prefix(k);
+    }
+
+    @Override
+    public String toString() {
+        return "Instance{" +
+                "name=" + name +
+                ", size=" + size +
+                ", depot=" + getDepotId() +
+                ", capacity=" + capacity +
+                '}';
+    }
+}
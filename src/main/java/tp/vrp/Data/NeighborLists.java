@@ -0,0 +1,86 @@
+package tp.vrp.Data;
+
+/**
+ * La classe NeighborLists stocke, pour chaque nœud d'une instance, ses k plus proches voisins
+ * triés par distance croissante. Les listes sont calculées une seule fois par instance
+ * (voir {@link Instance#getNeighbors(int)}) et servent à restreindre les recherches locales
+ * aux arêtes courtes.
+ */
+public class NeighborLists {
+
+    /** Nombre de voisins utilisé par défaut par les recherches locales. */
+    public static final int DEFAULT_SIZE = 10;
+
+    private final int size;
+    private final int k;
+    // Écart entre les listes de deux nœuds consécutifs : k, ou davantage pour un préfixe
+    private final int stride;
+    private final int[] neighbors;
+
+    /**
+     * Calcule les k plus proches voisins de chaque nœud à l'aide d'une {@link SpatialGrid},
+     * en O(n·k) en moyenne pour des nœuds répartis uniformément.
+     *
+     * @param instance L'instance dont les voisinages sont calculés.
+     * @param k        Le nombre de voisins par nœud (borné par le nombre de nœuds - 1).
+     */
+    public NeighborLists(Instance instance, int k) {
+        if (k < 1) {
+            throw new IllegalArgumentException("Le nombre de voisins doit être positif : " + k);
+        }
+        this.size = instance.size();
+        this.k = Math.min(k, Math.max(size - 1, 0));
+        this.stride = this.k;
+        this.neighbors = new int[size * this.k];
+
+        SpatialGrid grid = new SpatialGrid(instance);
+        int[] found = new int[this.k];
+        double[] foundDistances = new double[this.k];
+        for (int i = 0; i < size; i++) {
+            grid.nearest(i, this.k, found, foundDistances);
+            System.arraycopy(found, 0, neighbors, i * this.k, this.k);
+        }
+    }
+
+    private NeighborLists(NeighborLists lists, int k) {
+        this.size = lists.size;
+        this.k = k;
+        this.stride = lists.stride;
+        this.neighbors = lists.neighbors;
+    }
+
+    /**
+     * Restreint les listes à leurs k premiers voisins, sans recopier les tableaux.
+     *
+     * @param k Le nombre de voisins par nœud.
+     * @return Ces listes si elles n'ont pas plus de k voisins par nœud, une vue de leurs préfixes sinon.
+     */
+    public NeighborLists prefix(int k) {
+        if (k < 1) {
+            throw new IllegalArgumentException("Le nombre de voisins doit être positif : " + k);
+        }
+        return k >= this.k ? this : new NeighborLists(this, k);
+    }
+
+    /**
+     * Récupère le voisin de rang donné d'un nœud.
+     *
+     * @param node L'indice du nœud.
+     * @param rank Le rang du voisin, 0 étant le plus proche.
+     * @return L'indice du voisin.
+     */
+    public int get(int node, int rank) {
+        return neighbors[node * stride + rank];
+    }
+
+    /**
+     * @return Le nombre de voisins stockés par nœud.
+     */
+    public int getK() {
+        return k;
+    }
+
+    public int size() {
+        return size;
+    }
+}
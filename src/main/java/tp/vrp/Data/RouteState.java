@@ -0,0 +1,223 @@
+package tp.vrp.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * La classe RouteState représente une route (dépôt, clients, dépôt) avec les sommes préfixes
+ * de charge et de distance le long de la route.
+ * <p>
+ * Les positions vont de 0 (dépôt de départ) à {@link #length()} + 1 (dépôt d'arrivée), les
+ * clients occupant les positions 1 à {@link #length()}. Les sommes suffixes s'en déduisent,
+ * si bien que la charge ou la distance de tout segment, et celles d'une route obtenue en
+ * concaténant le début d'une route et la fin d'une autre, s'obtiennent en temps constant.
+ * Après un mouvement, seules les positions modifiées et celles qui les suivent sont recalculées.
+ */
+public final class RouteState {
+
+    private final Instance instance;
+    private final DistanceMatrix distances;
+    private final int depot;
+
+    private int[] nodes;
+    // prefixLoad[p] : charge des clients des positions 1 à p
+    private double[] prefixLoad;
+    // prefixDistance[p] : distance parcourue du dépôt de départ jusqu'à la position p
+    private double[] prefixDistance;
+    private int length;
+
+    /**
+     * Construit une route vide.
+     *
+     * @param instance L'instance à laquelle appartient la route.
+     */
+    public RouteState(Instance instance) {
+        this.instance = instance;
+        this.distances = instance.getDistances();
+        this.depot = instance.getDepotIndex();
+        allocate(8);
+        setTail(1, nodes, 0);
+    }
+
+    /**
+     * Construit une route à partir d'une liste d'identifiants de nœuds. Les occurrences du dépôt sont ignorées.
+     *
+     * @param instance L'instance à laquelle appartient la route.
+     * @param route    Les identifiants des nœuds de la route.
+     */
+    public RouteState(Instance instance, List<Integer> route) {
+        this(instance);
+        int[] customers = new int[route.size()];
+        int count = 0;
+        for (int id : route) {
+            int node = instance.getIndexOf(id);
+            if (node != depot) {
+                customers[count++] = node;
+            }
+        }
+        setTail(1, customers, count);
+    }
+
+    /**
+     * Agrandit les tableaux en conservant les positions déjà calculées.
+     */
+    private void allocate(int capacity) {
+        int[] oldNodes = nodes;
+        double[] oldLoad = prefixLoad;
+        double[] oldDistance = prefixDistance;
+        nodes = new int[capacity];
+        prefixLoad = new double[capacity];
+        prefixDistance = new double[capacity];
+        if (oldNodes != null) {
+            System.arraycopy(oldNodes, 0, nodes, 0, oldNodes.length);
+            System.arraycopy(oldLoad, 0, prefixLoad, 0, oldLoad.length);
+            System.arraycopy(oldDistance, 0, prefixDistance, 0, oldDistance.length);
+        }
+    }
+
+    /**
+     * Fait de cette route une copie d'une autre route de la même instance, en réutilisant ses tableaux.
+     *
+     * @param other La route copiée.
+     */
+    public void copyFrom(RouteState other) {
+        if (other.length + 2 > nodes.length) {
+            allocate(other.nodes.length);
+        }
+        System.arraycopy(other.nodes, 0, nodes, 0, other.length + 2);
+        System.arraycopy(other.prefixLoad, 0, prefixLoad, 0, other.length + 2);
+        System.arraycopy(other.prefixDistance, 0, prefixDistance, 0, other.length + 2);
+        length = other.length;
+    }
+
+    /**
+     * Remplace les clients situés à partir d'une position donnée et met à jour les sommes
+     * préfixes à partir de cette position seulement.
+     *
+     * @param from      La première position remplacée (entre 1 et {@link #length()} + 1).
+     * @param customers Les indices des nouveaux clients, placés à partir de {@code from}.
+     * @param count     Le nombre de nouveaux clients.
+     */
+    public void setTail(int from, int[] customers, int count) {
+        int newLength = from - 1 + count;
+        if (newLength + 2 > nodes.length) {
+            allocate(newLength + 2 + newLength / 2);
+        }
+        System.arraycopy(customers, 0, nodes, from, count);
+        nodes[0] = depot;
+        nodes[newLength + 1] = depot;
+        length = newLength;
+
+        prefixLoad[0] = 0;
+        prefixDistance[0] = 0;
+        for (int p = from; p <= length + 1; p++) {
+            prefixLoad[p] = prefixLoad[p - 1] + (p <= length ? instance.getDemand(nodes[p]) : 0);
+            prefixDistance[p] = prefixDistance[p - 1] + distances.get(nodes[p - 1], nodes[p]);
+        }
+    }
+
+    /**
+     * @return Le nombre de clients de la route.
+     */
+    public int length() {
+        return length;
+    }
+
+    /**
+     * @param p Une position, entre 0 et {@link #length()} + 1.
+     * @return L'indice du nœud à cette position.
+     */
+    public int get(int p) {
+        return nodes[p];
+    }
+
+    /**
+     * @return La charge totale de la route.
+     */
+    public double load() {
+        return prefixLoad[length];
+    }
+
+    /**
+     * @return La distance totale de la route, retour au dépôt compris.
+     */
+    public double distance() {
+        return prefixDistance[length + 1];
+    }
+
+    /**
+     * @return La capacité du véhicule restant inutilisée (négative si la route est surchargée).
+     */
+    public double residualCapacity() {
+        return instance.getCapacity() - load();
+    }
+
+    /**
+     * @return La charge des clients des positions 1 à p.
+     */
+    public double prefixLoad(int p) {
+        return prefixLoad[Math.min(p, length)];
+    }
+
+    /**
+     * @return La charge des clients des positions p à {@link #length()}.
+     */
+    public double suffixLoad(int p) {
+        return load() - prefixLoad[Math.max(p - 1, 0)];
+    }
+
+    /**
+     * @return La charge des clients des positions from à to (incluses).
+     */
+    public double segmentLoad(int from, int to) {
+        return prefixLoad[to] - prefixLoad[from - 1];
+    }
+
+    /**
+     * @return La distance parcourue du dépôt de départ jusqu'à la position p.
+     */
+    public double prefixDistance(int p) {
+        return prefixDistance[p];
+    }
+
+    /**
+     * @return La distance parcourue de la position p jusqu'au dépôt d'arrivée.
+     */
+    public double suffixDistance(int p) {
+        return prefixDistance[length + 1] - prefixDistance[p];
+    }
+
+    /**
+     * @return La distance parcourue entre les positions from et to, dans un sens ou dans l'autre (distances symétriques).
+     */
+    public double segmentDistance(int from, int to) {
+        return prefixDistance[to] - prefixDistance[from];
+    }
+
+    /**
+     * Charge de la route formée des positions 0 à i de cette route suivies des positions j
+     * à la fin de {@code other}.
+     */
+    public double joinLoad(int i, RouteState other, int j) {
+        return prefixLoad(i) + other.suffixLoad(j);
+    }
+
+    /**
+     * Distance de la route formée des positions 0 à i de cette route suivies des positions j
+     * à la fin de {@code other}.
+     */
+    public double joinDistance(int i, RouteState other, int j) {
+        return prefixDistance[i] + distances.get(nodes[i], other.nodes[j]) + other.suffixDistance(j);
+    }
+
+    /**
+     * @return Les identifiants des nœuds de la route, dépôt compris aux deux extrémités.
+     */
+    public List<Integer> toIds() {
+        List<Integer> ids = new ArrayList<>(length + 2);
+        for (int p = 0; p <= length + 1; p++) {
+            ids.add(instance.getIdOf(nodes[p]));
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,63 @@
+package tp.vrp.Data;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * La classe Solution représente une solution immuable du problème de routage de véhicules :
+ * la tournée géante dont elle est issue, les routes obtenues après découpage et leur distance totale.
+ */
+public final class Solution {
+
+    private final List<Integer> giantTour;
+    private final List<List<Integer>> routes;
+    private final double cost;
+
+    /**
+     * Construit une solution. Les listes sont copiées.
+     *
+     * @param giantTour La tournée géante, sous forme d'identifiants de nœuds.
+     * @param routes    Les routes, chacune commençant et finissant au dépôt.
+     * @param cost      La distance totale des routes.
+     */
+    public Solution(List<Integer> giantTour, List<List<Integer>> routes, double cost) {
+        this.giantTour = List.copyOf(giantTour);
+        List<List<Integer>> copy = new ArrayList<>(routes.size());
+        for (List<Integer> route : routes) {
+            copy.add(List.copyOf(route));
+        }
+        this.routes = Collections.unmodifiableList(copy);
+        this.cost = cost;
+    }
+
+    public List<Integer> getGiantTour() {
+        return giantTour;
+    }
+
+    public List<List<Integer>> getRoutes() {
+        return routes;
+    }
+
+    public double getCost() {
+        return cost;
+    }
+
+    /**
+     * Indique si cette solution est strictement meilleure qu'une autre.
+     *
+     * @param other L'autre solution, éventuellement nulle.
+     * @return true si {@code other} est nulle ou plus coûteuse.
+     */
+    public boolean isBetterThan(Solution other) {
+        return other == null || cost < other.cost;
+    }
+
+    @Override
+    public String toString() {
+        return "Solution{" +
+                "cost=" + cost +
+                ", routes=" + routes.size() +
+                '}';
+    }
+}
@@ -0,0 +1,501 @@
+package tp.vrp.Data;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * La classe SpatialGrid est un index spatial en grille uniforme sur les coordonnées des nœuds
+ * d'une {@link Instance}. Elle répond aux requêtes de plus proches voisins parmi les nœuds
+ * encore présents et supporte la suppression et la réinsertion de nœuds en temps constant.
+ * <p>
+ * Chaque cellule contient en moyenne deux nœuds. Une requête parcourt les anneaux de cellules
+ * autour du nœud jusqu'à ce que les cellules restantes soient trop éloignées pour améliorer
+ * le résultat. Lorsque la grille est presque vide, le parcours bascule sur la liste des nœuds
+ * présents, ce qui borne le coût d'une requête par le nombre de nœuds restants.
+ * Cette classe n'est pas thread-safe.
+ */
+public class SpatialGrid {
+
+    /** Nombre de tirages par rejet tentés avant d'énumérer les nœuds d'un disque. */
+    private static final int SAMPLING_ATTEMPTS = 16;
+
+    private final DistanceMatrix distances;
+    private final double[] x;
+    private final double[] y;
+    private final int columns;
+    private final int rows;
+    private final double minX;
+    private final double minY;
+    private final double cellWidth;
+    private final double cellHeight;
+    private final double side;
+
+    // Les nœuds d'une cellule occupent les cases [cellStart[c], cellStart[c+1]) de slots,
+    // les cellCount[c] premiers étant présents
+    private final int[] cellStart;
+    private final int[] cellCount;
+    private final int[] slots;
+    private final int[] slotOf;
+    private final int[] cellOf;
+
+    // Liste compacte des nœuds présents
+    private final int[] live;
+    private final int[] livePosition;
+    private int size;
+
+    private final int[] nearestBuffer = new int[1];
+    private final double[] nearestDistanceBuffer = new double[1];
+    private final int[] ringBuffer;
+    private final int[] rowOffsets;
+
+    // Première et dernière colonnes occupées de chaque ligne de la grille (rowFirst > rowLast si la ligne est vide)
+    private final int[] rowFirst;
+    private final int[] rowLast;
+    private int farthest;
+    private double farthestDistance;
+
+    /**
+     * Construit une grille contenant tous les nœuds de l'instance.
+     *
+     * @param instance L'instance indexée.
+     */
+    public SpatialGrid(Instance instance) {
+        int n = instance.size();
+        this.distances = instance.getDistances();
+        this.x = new double[n];
+        this.y = new double[n];
+        double maxX = -Double.MAX_VALUE;
+        double maxY = -Double.MAX_VALUE;
+        double lowX = Double.MAX_VALUE;
+        double lowY = Double.MAX_VALUE;
+        for (int i = 0; i < n; i++) {
+            x[i] = instance.getX(i);
+            y[i] = instance.getY(i);
+            lowX = Math.min(lowX, x[i]);
+            lowY = Math.min(lowY, y[i]);
+            maxX = Math.max(maxX, x[i]);
+            maxY = Math.max(maxY, y[i]);
+        }
+        this.minX = n == 0 ? 0 : lowX;
+        this.minY = n == 0 ? 0 : lowY;
+        int perSide = Math.max(1, (int) Math.ceil(Math.sqrt(n / 2.0)));
+        this.columns = perSide;
+        this.rows = perSide;
+        double width = n == 0 ? 0 : maxX - minX;
+        double height = n == 0 ? 0 : maxY - minY;
+        this.cellWidth = width > 0 ? width / columns : 1;
+        this.cellHeight = height > 0 ? height / rows : 1;
+        this.side = Math.min(cellWidth, cellHeight);
+        this.ringBuffer = new int[4 * perSide];
+        this.rowOffsets = new int[perSide];
+        this.rowFirst = new int[rows];
+        this.rowLast = new int[rows];
+        Arrays.fill(rowFirst, columns);
+        Arrays.fill(rowLast, -1);
+
+        int cells = columns * rows;
+        this.cellStart = new int[cells + 1];
+        this.cellCount = new int[cells];
+        this.slots = new int[n];
+        this.slotOf = new int[n];
+        this.cellOf = new int[n];
+        for (int i = 0; i < n; i++) {
+            cellOf[i] = cell(column(x[i]), row(y[i]));
+            cellStart[cellOf[i] + 1]++;
+        }
+        for (int c = 0; c < cells; c++) {
+            cellStart[c + 1] += cellStart[c];
+        }
+        for (int i = 0; i < n; i++) {
+            int c = cellOf[i];
+            int slot = cellStart[c] + cellCount[c]++;
+            slots[slot] = i;
+            slotOf[i] = slot;
+            occupy(c);
+        }
+
+        this.live = new int[n];
+        this.livePosition = new int[n];
+        for (int i = 0; i < n; i++) {
+            live[i] = i;
+            livePosition[i] = i;
+        }
+        this.size = n;
+    }
+
+    private int column(double px) {
+        return Math.min(columns - 1, Math.max(0, (int) ((px - minX) / cellWidth)));
+    }
+
+    private int row(double py) {
+        return Math.min(rows - 1, Math.max(0, (int) ((py - minY) / cellHeight)));
+    }
+
+    private int cell(int column, int row) {
+        return row * columns + column;
+    }
+
+    /**
+     * @return Le nombre de nœuds présents dans la grille.
+     */
+    public int size() {
+        return size;
+    }
+
+    public boolean contains(int node) {
+        int c = cellOf[node];
+        return slotOf[node] < cellStart[c] + cellCount[c];
+    }
+
+    /**
+     * Retire un nœud de la grille.
+     *
+     * @param node L'indice du nœud.
+     */
+    public void remove(int node) {
+        if (!contains(node)) {
+            return;
+        }
+        int c = cellOf[node];
+        swapSlots(slotOf[node], cellStart[c] + cellCount[c] - 1);
+        cellCount[c]--;
+        if (cellCount[c] == 0) {
+            vacate(c);
+        }
+
+        int position = livePosition[node];
+        int last = live[--size];
+        live[position] = last;
+        livePosition[last] = position;
+        live[size] = node;
+        livePosition[node] = size;
+    }
+
+    /**
+     * Réinsère un nœud précédemment retiré.
+     *
+     * @param node L'indice du nœud.
+     */
+    public void add(int node) {
+        if (contains(node)) {
+            return;
+        }
+        int c = cellOf[node];
+        swapSlots(slotOf[node], cellStart[c] + cellCount[c]);
+        cellCount[c]++;
+        occupy(c);
+
+        int position = livePosition[node];
+        int first = live[size];
+        live[position] = first;
+        livePosition[first] = position;
+        live[size] = node;
+        livePosition[node] = size;
+        size++;
+    }
+
+    private void occupy(int c) {
+        int row = c / columns;
+        int column = c % columns;
+        rowFirst[row] = Math.min(rowFirst[row], column);
+        rowLast[row] = Math.max(rowLast[row], column);
+    }
+
+    /**
+     * Resserre les extrémités occupées de la ligne d'une cellule qui vient de se vider.
+     */
+    private void vacate(int c) {
+        int row = c / columns;
+        while (rowFirst[row] <= rowLast[row] && cellCount[cell(rowFirst[row], row)] == 0) {
+            rowFirst[row]++;
+        }
+        while (rowLast[row] >= rowFirst[row] && cellCount[cell(rowLast[row], row)] == 0) {
+            rowLast[row]--;
+        }
+        if (rowFirst[row] > rowLast[row]) {
+            rowFirst[row] = columns;
+            rowLast[row] = -1;
+        }
+    }
+
+    private void swapSlots(int a, int b) {
+        int nodeA = slots[a];
+        int nodeB = slots[b];
+        slots[a] = nodeB;
+        slotOf[nodeB] = a;
+        slots[b] = nodeA;
+        slotOf[nodeA] = b;
+    }
+
+    /**
+     * Cherche le nœud présent le plus proche d'un nœud donné (lui-même exclu).
+     *
+     * @param node L'indice du nœud de référence.
+     * @return L'indice du plus proche nœud présent, ou -1 si aucun.
+     */
+    public int nearest(int node) {
+        return nearest(node, 1, nearestBuffer, nearestDistanceBuffer) == 1 ? nearestBuffer[0] : -1;
+    }
+
+    /**
+     * Cherche les k nœuds présents les plus proches d'un nœud donné (lui-même exclu),
+     * triés par distance croissante.
+     *
+     * @param node      L'indice du nœud de référence.
+     * @param k         Le nombre de voisins recherchés.
+     * @param out       Reçoit les indices des voisins trouvés.
+     * @param outDistances Reçoit les distances correspondantes.
+     * @return Le nombre de voisins trouvés (au plus k).
+     */
+    public int nearest(int node, int k, int[] out, double[] outDistances) {
+        int found = 0;
+        int cx = column(x[node]);
+        int cy = row(y[node]);
+        int maxRing = maxRing(cx, cy);
+        int visitedSlots = 0;
+        for (int ring = 0; ring <= maxRing; ring++) {
+            int cells = ringCells(cx, cy, ring);
+            for (int r = 0; r < cells; r++) {
+                int c = ringBuffer[r];
+                int end = cellStart[c] + cellCount[c];
+                for (int slot = cellStart[c]; slot < end; slot++) {
+                    found = offer(node, slots[slot], k, found, out, outDistances);
+                }
+                visitedSlots += cellStart[c + 1] - cellStart[c] + 1;
+            }
+            if (found == k && outDistances[k - 1] <= ring * side) {
+                return found;
+            }
+            if (visitedSlots > 2 * size) {
+                // Grille clairsemée : un parcours direct des nœuds présents est moins coûteux
+                found = 0;
+                for (int p = 0; p < size; p++) {
+                    found = offer(node, live[p], k, found, out, outDistances);
+                }
+                return found;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Cherche le nœud présent le plus éloigné d'un nœud donné. Le plus éloigné se trouve vers
+     * les extrémités occupées des lignes de la grille : chaque ligne est parcourue depuis ses
+     * deux extrémités vers la colonne du nœud, tant qu'une cellule peut encore contenir un nœud
+     * plus éloigné.
+     *
+     * @param node L'indice du nœud de référence.
+     * @return L'indice du nœud présent le plus éloigné, ou -1 si aucun.
+     */
+    public int farthest(int node) {
+        farthest = -1;
+        farthestDistance = -1;
+        int cx = column(x[node]);
+        int cy = row(y[node]);
+        // Les lignes les plus éloignées d'abord, pour élaguer rapidement les autres
+        for (int offset = Math.max(cy, rows - 1 - cy); offset >= 0; offset--) {
+            if (cy - offset >= 0) {
+                scanRowEnds(node, cx, cy - offset);
+            }
+            if (offset > 0 && cy + offset < rows) {
+                scanRowEnds(node, cx, cy + offset);
+            }
+        }
+        return farthest;
+    }
+
+    private void scanRowEnds(int node, int cx, int row) {
+        int first = rowFirst[row];
+        int last = rowLast[row];
+        if (first > last) {
+            return;
+        }
+        // La distance maximale à une cellule décroît en allant d'une extrémité vers la colonne du nœud
+        for (int i = first; i <= Math.min(last, cx); i++) {
+            if (!scanFarthest(node, cell(i, row))) {
+                break;
+            }
+        }
+        for (int i = last; i >= Math.max(first, cx + 1); i--) {
+            if (!scanFarthest(node, cell(i, row))) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Met à jour le nœud le plus éloigné avec les nœuds d'une cellule.
+     *
+     * @return false si la cellule est trop proche pour contenir un nœud plus éloigné.
+     */
+    private boolean scanFarthest(int node, int c) {
+        if (maxDistanceToCell(node, c) <= farthestDistance) {
+            return false;
+        }
+        int end = cellStart[c] + cellCount[c];
+        for (int slot = cellStart[c]; slot < end; slot++) {
+            int candidate = slots[slot];
+            double d = distances.get(node, candidate);
+            if (candidate != node && d > farthestDistance) {
+                farthestDistance = d;
+                farthest = candidate;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Cherche les nœuds présents situés à une distance inférieure ou égale à un rayon donné
+     * d'un nœud (lui-même exclu). Seuls les anneaux pouvant intersecter le disque sont parcourus.
+     *
+     * @param node   L'indice du nœud de référence.
+     * @param radius Le rayon de recherche.
+     * @param out    Reçoit les indices des nœuds trouvés, sans ordre particulier ; doit pouvoir
+     *               contenir {@link #size()} éléments.
+     * @return Le nombre de nœuds trouvés.
+     */
+    public int within(int node, double radius, int[] out) {
+        int found = 0;
+        int cx = column(x[node]);
+        int cy = row(y[node]);
+        int maxRing = maxRing(cx, cy);
+        int visitedSlots = 0;
+        // Une cellule de l'anneau r est à une distance au moins (r - 1) * side du nœud
+        for (int ring = 0; ring <= maxRing && (ring - 1) * side <= radius; ring++) {
+            int cells = ringCells(cx, cy, ring);
+            for (int r = 0; r < cells; r++) {
+                int c = ringBuffer[r];
+                int end = cellStart[c] + cellCount[c];
+                for (int slot = cellStart[c]; slot < end; slot++) {
+                    int candidate = slots[slot];
+                    if (candidate != node && distances.get(node, candidate) <= radius) {
+                        out[found++] = candidate;
+                    }
+                }
+                visitedSlots += cellStart[c + 1] - cellStart[c] + 1;
+            }
+            if (visitedSlots > 2 * size) {
+                found = 0;
+                for (int p = 0; p < size; p++) {
+                    if (live[p] != node && distances.get(node, live[p]) <= radius) {
+                        out[found++] = live[p];
+                    }
+                }
+                return found;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Tire uniformément un nœud présent parmi ceux situés à une distance inférieure ou égale à
+     * un rayon donné d'un nœud (lui-même exclu), sans les énumérer : les cases des cellules
+     * couvrant le disque sont tirées au hasard jusqu'à tomber sur un nœud présent du disque.
+     * Après quelques échecs, les nœuds du disque sont énumérés par {@link #within}.
+     *
+     * @param node   L'indice du nœud de référence.
+     * @param radius Le rayon de recherche.
+     * @param random Le générateur aléatoire utilisé pour le tirage.
+     * @param buffer Tampon de travail pouvant contenir {@link #size()} éléments.
+     * @return L'indice du nœud tiré, ou -1 si aucun nœud présent n'est dans le disque.
+     */
+    public int randomWithin(int node, double radius, Random random, int[] buffer) {
+        int left = column(x[node] - radius);
+        int right = column(x[node] + radius);
+        int bottom = row(y[node] - radius);
+        int top = row(y[node] + radius);
+
+        // Les cases des cellules d'une ligne de la grille sont contiguës
+        int total = 0;
+        for (int j = bottom; j <= top; j++) {
+            total += cellStart[cell(right, j) + 1] - cellStart[cell(left, j)];
+            rowOffsets[j - bottom] = total;
+        }
+        for (int attempt = 0; attempt < SAMPLING_ATTEMPTS && total > 0; attempt++) {
+            int draw = random.nextInt(total);
+            // Première ligne dont la fin dépasse le tirage
+            int j = 0;
+            int high = top - bottom;
+            while (j < high) {
+                int middle = (j + high) >>> 1;
+                if (rowOffsets[middle] <= draw) {
+                    j = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            int slot = cellStart[cell(left, bottom + j)] + draw - (j == 0 ? 0 : rowOffsets[j - 1]);
+            int candidate = slots[slot];
+            if (candidate != node && contains(candidate) && distances.get(node, candidate) <= radius) {
+                return candidate;
+            }
+        }
+
+        int found = within(node, radius, buffer);
+        return found == 0 ? -1 : buffer[random.nextInt(found)];
+    }
+
+    /**
+     * @return La distance maximale entre un nœud et un point de la cellule donnée.
+     */
+    private double maxDistanceToCell(int node, int c) {
+        double cellX = minX + (c % columns) * cellWidth;
+        double cellY = minY + (c / columns) * cellHeight;
+        double dx = Math.max(Math.abs(x[node] - cellX), Math.abs(x[node] - cellX - cellWidth));
+        double dy = Math.max(Math.abs(y[node] - cellY), Math.abs(y[node] - cellY - cellHeight));
+        return Math.sqrt(dx * dx + dy * dy);
+    }
+
+    /**
+     * @return Le plus grand anneau contenant encore des cellules de la grille autour de la cellule (cx, cy).
+     */
+    private int maxRing(int cx, int cy) {
+        return Math.max(Math.max(cx, columns - 1 - cx), Math.max(cy, rows - 1 - cy));
+    }
+
+    /**
+     * Remplit ringBuffer avec les cellules de la grille situées sur l'anneau donné autour de (cx, cy).
+     *
+     * @return Le nombre de cellules de l'anneau.
+     */
+    private int ringCells(int cx, int cy, int ring) {
+        int count = 0;
+        int left = cx - ring;
+        int right = cx + ring;
+        int bottom = cy - ring;
+        int top = cy + ring;
+        for (int i = Math.max(0, left); i <= Math.min(columns - 1, right); i++) {
+            boolean edgeColumn = i == left || i == right;
+            for (int j = bottom; j <= top; j += edgeColumn ? 1 : Math.max(1, top - bottom)) {
+                if (j >= 0 && j < rows) {
+                    ringBuffer[count++] = cell(i, j);
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Insère un candidat dans la liste bornée des meilleurs voisins.
+     *
+     * @return Le nouveau nombre de voisins retenus.
+     */
+    private int offer(int node, int candidate, int k, int found, int[] out, double[] outDistances) {
+        if (candidate == node) {
+            return found;
+        }
+        double d = distances.get(node, candidate);
+        if (found == k && d >= outDistances[k - 1]) {
+            return found;
+        }
+        int r = found == k ? k - 1 : found++;
+        while (r > 0 && outDistances[r - 1] > d) {
+            outDistances[r] = outDistances[r - 1];
+            out[r] = out[r - 1];
+            r--;
+        }
+        outDistances[r] = d;
+        out[r] = candidate;
+        return found;
+    }
+}
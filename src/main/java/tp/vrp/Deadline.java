@@ -0,0 +1,82 @@
+package tp.vrp;
+
+import java.time.Duration;
+
+/**
+ * Wall-clock limit checked by the searches between iterations. It is based on
+ * {@link System#nanoTime()}, so it is not affected by changes of the system clock, and checking
+ * it costs about as much as reading the clock. Instances are immutable and can be shared
+ * between threads.
+ */
+public final class Deadline {
+
+    /** A deadline that never expires: the searches only stop on their iteration budgets. */
+    public static final Deadline NONE = new Deadline(0, false);
+
+    private final long nanoTime;
+    private final boolean bounded;
+
+    private Deadline(long nanoTime, boolean bounded) {
+        this.nanoTime = nanoTime;
+        this.bounded = bounded;
+    }
+
+    /**
+     * @param timeLimit The time left from now, not negative.
+     * @return A deadline expiring after the given time.
+     */
+    public static Deadline after(Duration timeLimit) {
+        if (timeLimit.isNegative()) {
+            throw new IllegalArgumentException("The time limit must not be negative: " + timeLimit);
+        }
+        return new Deadline(System.nanoTime() + saturatedNanos(timeLimit), true);
+    }
+
+    /**
+     * @return Whether the deadline has passed.
+     */
+    public boolean expired() {
+        return bounded && System.nanoTime() - nanoTime >= 0;
+    }
+
+    /**
+     * @return The time left before the deadline, zero if it has passed, or null if it never expires.
+     */
+    public Duration remaining() {
+        if (!bounded) {
+            return null;
+        }
+        return Duration.ofNanos(Math.max(0, nanoTime - System.nanoTime()));
+    }
+
+    /**
+     * @param margin The time kept before this deadline, for instance to finish a solution.
+     * @return A deadline expiring the given time before this one, and never before now.
+     */
+    public Deadline minus(Duration margin) {
+        if (!bounded) {
+            return this;
+        }
+        long now = System.nanoTime();
+        long earlier = nanoTime - saturatedNanos(margin);
+        return new Deadline(earlier - now < 0 ? now : earlier, true);
+    }
+
+    /**
+     * @return The earlier of this deadline and the given one.
+     */
+    public Deadline earliest(Deadline other) {
+        if (!other.bounded) {
+            return this;
+        }
+        if (!bounded) {
+            return other;
+        }
+        return other.nanoTime - nanoTime < 0 ? other : this;
+    }
+
+    private static long saturatedNanos(Duration duration) {
+        // Durations above about 292 years do not fit in a long number of nanoseconds
+        return duration.compareTo(Duration.ofDays(100 * 365)) > 0 ? 100L * 365 * 86_400_000_000_000L : duration.toNanos();
+    }
+}
@@ -0,0 +1,103 @@
+package tp.vrp;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Bounded pool of the best distinct tours found by concurrent workers.
+ * Tours that cannot enter the pool are rejected from a volatile threshold without taking the lock.
+ */
+public class ElitePool {
+
+    private final int capacity;
+    private final List<List<Integer>> tours;
+    private final List<Double> costs;
+    private volatile double admissionThreshold = Double.MAX_VALUE;
+
+    /**
+     * @param capacity The maximum number of tours kept.
+     */
+    public ElitePool(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("The pool capacity must be positive: " + capacity);
+        }
+        this.capacity = capacity;
+        this.tours = new ArrayList<>(capacity + 1);
+        this.costs = new ArrayList<>(capacity + 1);
+    }
+
+    /**
+     * Tells, without taking the lock, whether a tour of the given cost could currently enter the pool.
+     * Callers holding a tour in another representation can use it to skip the conversion.
+     *
+     * @param cost The cost of the tour.
+     * @return false if {@link #offer} would certainly reject the tour.
+     */
+    public boolean admits(double cost) {
+        return cost < admissionThreshold;
+    }
+
+    /**
+     * Offers a tour to the pool. The tour is copied if it is admitted.
+     *
+     * @param tour The tour.
+     * @param cost Its cost.
+     * @return true if the tour is the new best of the pool.
+     */
+    public boolean offer(List<Integer> tour, double cost) {
+        if (cost >= admissionThreshold) {
+            return false;
+        }
+        synchronized (this) {
+            int position = 0;
+            while (position < costs.size() && costs.get(position) <= cost) {
+                if (costs.get(position) == cost && tours.get(position).equals(tour)) {
+                    return false; // Already in the pool
+                }
+                position++;
+            }
+            if (position >= capacity) {
+                return false;
+            }
+            tours.add(position, new ArrayList<>(tour));
+            costs.add(position, cost);
+            if (tours.size() > capacity) {
+                tours.remove(capacity);
+                costs.remove(capacity);
+            }
+            if (tours.size() == capacity) {
+                admissionThreshold = costs.getLast();
+            }
+            return position == 0;
+        }
+    }
+
+    /**
+     * @return A copy of the best tour, or {@code null} if the pool is empty.
+     */
+    public synchronized List<Integer> getBest() {
+        return tours.isEmpty() ? null : new ArrayList<>(tours.getFirst());
+    }
+
+    /**
+     * @return The cost of the best tour, or {@link Double#MAX_VALUE} if the pool is empty.
+     */
+    public synchronized double getBestCost() {
+        return costs.isEmpty() ? Double.MAX_VALUE : costs.getFirst();
+    }
+
+    /**
+     * @return Copies of the tours of the pool, best first.
+     */
+    public synchronized List<List<Integer>> getTours() {
+        List<List<Integer>> copy = new ArrayList<>(tours.size());
+        for (List<Integer> tour : tours) {
+            copy.add(new ArrayList<>(tour));
+        }
+        return copy;
+    }
+
+    public synchronized int size() {
+        return tours.size();
+    }
+}
@@ -0,0 +1,399 @@
+package tp.vrp;
+
+import tp.vrp.Data.DistanceMatrix;
+import tp.vrp.Data.Instance;
+import tp.vrp.Data.NeighborLists;
+import tp.vrp.Data.RouteState;
+import tp.vrp.Data.Solution;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Granular tabu search (Toth and Vigo, 2003) on a multi-route solution.
+ * <p>
+ * Only moves creating a short edge are evaluated: for every customer u, the neighbours v taken
+ * from its candidate list whose distance to u is at most the granularity threshold, {@code beta}
+ * times the average edge length of the initial solution. Moves relocate u next to v, in another
+ * route or in the same one, swap u with a customer adjacent to v in another route, or exchange
+ * the ends of the routes of u and v so that one follows the other (2-opt*). Every
+ * iteration applies the best move that is not tabu, even if it worsens the solution; a move is
+ * tabu if it puts a customer back into a route it left less than {@code tenure} iterations ago,
+ * unless it yields a new best solution. Moves inside a route are only applied when improving,
+ * since they change no (customer, route) attribute.
+ * <p>
+ * Tabu attributes are kept in a small open-addressing hash table, so memory does not grow with
+ * the number of routes. The search draws no random number: a run only depends on its input.
+ * Not thread-safe.
+ */
+public class GranularTabuSearch {
+
+    private static final double EPSILON = 1e-9;
+
+    private final Instance instance;
+    private final DistanceMatrix distances;
+    private final NeighborLists neighbors;
+    private final int depot;
+    private int tenure = 20;
+    private double beta = 2.5;
+
+    private final TabuTable tabu = new TabuTable();
+
+    // Best move of the current iteration
+    private double moveDelta;
+    private int moveType;
+    private int moveCustomer;
+    private int moveOther;
+    private boolean moveAfter;
+
+    private static final int NONE = 0;
+    private static final int RELOCATE = 1;
+    private static final int SWAP = 2;
+    private static final int TAILS = 3;
+
+    public GranularTabuSearch(Instance instance) {
+        this(instance, NeighborLists.DEFAULT_SIZE);
+    }
+
+    /**
+     * @param instance      The instance the routes belong to.
+     * @param neighborCount The number of nearest neighbours considered for each customer.
+     */
+    public GranularTabuSearch(Instance instance, int neighborCount) {
+        this.instance = instance;
+        this.distances = instance.getDistances();
+        this.neighbors = instance.getNeighbors(neighborCount);
+        this.depot = instance.getDepotIndex();
+    }
+
+    /**
+     * @param tenure The number of iterations during which a customer may not go back to a route it left.
+     */
+    public void setTenure(int tenure) {
+        if (tenure < 0) {
+            throw new IllegalArgumentException("The tabu tenure must not be negative: " + tenure);
+        }
+        this.tenure = tenure;
+    }
+
+    /**
+     * @param beta The granularity factor: edges longer than beta times the average edge length are not created.
+     */
+    public void setGranularity(double beta) {
+        if (beta <= 0) {
+            throw new IllegalArgumentException("The granularity factor must be positive: " + beta);
+        }
+        this.beta = beta;
+    }
+
+    /**
+     * Runs the search from a set of routes, for instance those of {@link Main#computeSolFromSegment}.
+     *
+     * @param initialRoutes             The initial routes, as lists of node IDs starting and ending at the depot.
+     * @param maxIterations             The maximum number of iterations.
+     * @param maxIterWithoutImprovement The maximum number of iterations without improvement before stopping.
+     * @return The best solution found.
+     */
+    public Solution solve(List<List<Integer>> initialRoutes, int maxIterations, int maxIterWithoutImprovement) {
+        PartialSolution current = new PartialSolution(instance);
+        PartialSolution best = new PartialSolution(instance);
+        current.load(initialRoutes);
+        best.copyFrom(current);
+        double currentCost = current.cost();
+        double bestCost = currentCost;
+        SearchMetrics.recordBest(bestCost);
+
+        int edges = Math.max(1, instance.size() - 1 + current.routeCount());
+        double threshold = beta * currentCost / edges;
+        tabu.clear();
+
+        int lastImprovement = 0;
+        for (int iteration = 1; iteration <= maxIterations; iteration++) {
+            if (iteration - lastImprovement > maxIterWithoutImprovement) {
+                break;
+            }
+            if (!selectMove(current, threshold, iteration, currentCost, bestCost)) {
+                break;
+            }
+            apply(current, iteration);
+            currentCost += moveDelta;
+            if (currentCost < bestCost - EPSILON) {
+                best.copyFrom(current);
+                bestCost = currentCost;
+                lastImprovement = iteration;
+                SearchMetrics.recordBest(bestCost);
+                SolverEvents.improvement(instance, "granular tabu", bestCost);
+            }
+        }
+
+        best.dropEmptyRoutes();
+        List<List<Integer>> routes = best.toRoutes();
+        List<Integer> giantTour = new ArrayList<>(instance.size());
+        giantTour.add(instance.getDepotId());
+        for (List<Integer> route : routes) {
+            giantTour.addAll(route.subList(1, route.size() - 1));
+        }
+        return new Solution(giantTour, routes, best.cost());
+    }
+
+    /**
+     * Finds the best admissible granular move of the current solution.
+     *
+     * @return false if no move is admissible.
+     */
+    private boolean selectMove(PartialSolution solution, double threshold, int iteration, double currentCost, double bestCost) {
+        moveType = NONE;
+        moveDelta = Double.POSITIVE_INFINITY;
+        double capacity = instance.getCapacity() + EPSILON;
+        for (int u = 0; u < instance.size(); u++) {
+            if (u == depot) {
+                continue;
+            }
+            int routeU = solution.routeOf(u);
+            RouteState a = solution.route(routeU);
+            int i = solution.positionOf(u);
+            int uPrev = a.get(i - 1);
+            int uNext = a.get(i + 1);
+            double removal = d(uPrev, uNext) - d(uPrev, u) - d(u, uNext);
+            double demandU = instance.getDemand(u);
+
+            for (int r = 0; r < neighbors.getK(); r++) {
+                int v = neighbors.get(u, r);
+                if (d(u, v) > threshold) {
+                    break; // Neighbours are sorted: only longer edges remain
+                }
+                if (v == depot) {
+                    continue;
+                }
+                int routeV = solution.routeOf(v);
+                RouteState b = solution.route(routeV);
+                int j = solution.positionOf(v);
+                boolean sameRoute = routeU == routeV;
+                boolean relocateAllowed = sameRoute || b.load() + demandU <= capacity;
+                boolean tabuInV = !sameRoute && tabu.contains(key(u, routeV), iteration);
+
+                // Relocate u after v, then before v
+                if (relocateAllowed) {
+                    int vNext = b.get(j + 1);
+                    if (vNext != u) {
+                        double delta = removal + d(v, u) + d(u, vNext) - d(v, vNext);
+                        consider(RELOCATE, u, v, true, delta, sameRoute, tabuInV, currentCost, bestCost);
+                    }
+                    int vPrev = b.get(j - 1);
+                    if (vPrev != u) {
+                        double delta = removal + d(vPrev, u) + d(u, v) - d(vPrev, v);
+                        consider(RELOCATE, u, v, false, delta, sameRoute, tabuInV, currentCost, bestCost);
+                    }
+                }
+
+                // Swap u with the customer after or before v, so that u becomes adjacent to v
+                if (!sameRoute) {
+                    for (int side = 0; side < 2; side++) {
+                        int w = b.get(side == 0 ? j + 1 : j - 1);
+                        if (w == depot) {
+                            continue;
+                        }
+                        double demandW = instance.getDemand(w);
+                        if (a.load() - demandU + demandW > capacity || b.load() - demandW + demandU > capacity) {
+                            continue;
+                        }
+                        int k = solution.positionOf(w);
+                        int wPrev = b.get(k - 1);
+                        int wNext = b.get(k + 1);
+                        double delta = d(uPrev, w) + d(w, uNext) - d(uPrev, u) - d(u, uNext)
+                                + d(wPrev, u) + d(u, wNext) - d(wPrev, w) - d(w, wNext);
+                        boolean isTabu = tabuInV || tabu.contains(key(w, routeU), iteration);
+                        consider(SWAP, u, w, false, delta, false, isTabu, currentCost, bestCost);
+                    }
+
+                    // Exchange the route ends so that v follows u, then so that u follows v
+                    considerTails(solution, u, v, capacity, iteration, currentCost, bestCost);
+                    considerTails(solution, v, u, capacity, iteration, currentCost, bestCost);
+                }
+            }
+        }
+        return moveType != NONE;
+    }
+
+    /**
+     * Evaluates the exchange of route ends after which y directly follows x: the route of x keeps
+     * its nodes up to x and the route of y its nodes before y. Customers going back to a route
+     * they recently left are detected from the first customer of each moved end.
+     */
+    private void considerTails(PartialSolution solution, int x, int y, double capacity, int iteration,
+                               double currentCost, double bestCost) {
+        int routeX = solution.routeOf(x);
+        int routeY = solution.routeOf(y);
+        RouteState a = solution.route(routeX);
+        RouteState b = solution.route(routeY);
+        int i = solution.positionOf(x);
+        int j = solution.positionOf(y);
+        if (a.joinLoad(i, b, j) > capacity || b.joinLoad(j - 1, a, i + 1) > capacity) {
+            return;
+        }
+        double delta = a.joinDistance(i, b, j) + b.joinDistance(j - 1, a, i + 1) - a.distance() - b.distance();
+        int xNext = a.get(i + 1);
+        boolean isTabu = tabu.contains(key(y, routeX), iteration)
+                || (xNext != depot && tabu.contains(key(xNext, routeY), iteration));
+        consider(TAILS, x, y, false, delta, false, isTabu, currentCost, bestCost);
+    }
+
+    /**
+     * Keeps a move if it is admissible and better than the best move found so far.
+     */
+    private void consider(int type, int customer, int other, boolean after, double delta,
+                          boolean intraRoute, boolean isTabu, double currentCost, double bestCost) {
+        if (delta >= moveDelta) {
+            return;
+        }
+        if (intraRoute && delta > -EPSILON) {
+            return;
+        }
+        if (isTabu && currentCost + delta >= bestCost - EPSILON) {
+            return; // Tabu, and no aspiration
+        }
+        moveType = type;
+        moveCustomer = customer;
+        moveOther = other;
+        moveAfter = after;
+        moveDelta = delta;
+    }
+
+    /**
+     * Applies the selected move and makes the return of the moved customers to their routes tabu.
+     */
+    private void apply(PartialSolution solution, int iteration) {
+        int u = moveCustomer;
+        int routeU = solution.routeOf(u);
+        if (moveType == RELOCATE) {
+            int v = moveOther;
+            int routeV = solution.routeOf(v);
+            solution.remove(u);
+            int p = solution.positionOf(v);
+            solution.insert(u, routeV, moveAfter ? p + 1 : p);
+            if (routeV != routeU) {
+                tabu.add(key(u, routeU), iteration + tenure, iteration);
+            }
+        } else if (moveType == TAILS) {
+            int y = moveOther;
+            int routeY = solution.routeOf(y);
+            int xNext = solution.route(routeU).get(solution.positionOf(u) + 1);
+            solution.exchangeTails(routeU, solution.positionOf(u), routeY, solution.positionOf(y));
+            tabu.add(key(y, routeY), iteration + tenure, iteration);
+            if (xNext != depot) {
+                tabu.add(key(xNext, routeU), iteration + tenure, iteration);
+            }
+        } else {
+            int w = moveOther;
+            int routeW = solution.routeOf(w);
+            int i = solution.positionOf(u);
+            int k = solution.positionOf(w);
+            solution.remove(u);
+            solution.remove(w);
+            solution.insert(w, routeU, i);
+            solution.insert(u, routeW, k);
+            tabu.add(key(u, routeU), iteration + tenure, iteration);
+            tabu.add(key(w, routeW), iteration + tenure, iteration);
+        }
+    }
+
+    private long key(int customer, int route) {
+        return (long) customer * instance.size() + route;
+    }
+
+    private double d(int a, int b) {
+        return distances.get(a, b);
+    }
+
+    /**
+     * Open-addressing hash table from a (customer, route) key to the last iteration during which
+     * it is tabu. Expired entries are dropped when the table is rebuilt, so its size follows the
+     * number of live attributes, about twice the tenure.
+     */
+    private static final class TabuTable {
+
+        private static final long EMPTY = -1;
+
+        private long[] keys = new long[64];
+        private int[] until = new int[64];
+        private int used;
+
+        TabuTable() {
+            Arrays.fill(keys, EMPTY);
+        }
+
+        void clear() {
+            Arrays.fill(keys, EMPTY);
+            used = 0;
+        }
+
+        boolean contains(long key, int iteration) {
+            int mask = keys.length - 1;
+            for (int slot = hash(key) & mask; keys[slot] != EMPTY; slot = (slot + 1) & mask) {
+                if (keys[slot] == key) {
+                    return until[slot] >= iteration;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Makes a key tabu up to a given iteration (inclusive).
+         *
+         * @param iteration The current iteration; entries that expired before it may be dropped.
+         */
+        void add(long key, int lastIteration, int iteration) {
+            int mask = keys.length - 1;
+            int slot = hash(key) & mask;
+            while (keys[slot] != EMPTY) {
+                if (keys[slot] == key) {
+                    until[slot] = lastIteration;
+                    return;
+                }
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = key;
+            until[slot] = lastIteration;
+            if (++used * 2 > keys.length) {
+                rebuild(iteration);
+            }
+        }
+
+        /**
+         * Drops the expired entries, and doubles the table if the live ones still fill a quarter of it.
+         */
+        private void rebuild(int iteration) {
+            long[] oldKeys = keys;
+            int[] oldUntil = until;
+            int live = 0;
+            for (int slot = 0; slot < oldKeys.length; slot++) {
+                if (oldKeys[slot] != EMPTY && oldUntil[slot] >= iteration) {
+                    live++;
+                }
+            }
+            int capacity = live * 4 > oldKeys.length ? oldKeys.length * 2 : oldKeys.length;
+            keys = new long[capacity];
+            until = new int[capacity];
+            Arrays.fill(keys, EMPTY);
+            used = 0;
+            int mask = capacity - 1;
+            for (int slot = 0; slot < oldKeys.length; slot++) {
+                if (oldKeys[slot] != EMPTY && oldUntil[slot] >= iteration) {
+                    int target = hash(oldKeys[slot]) & mask;
+                    while (keys[target] != EMPTY) {
+                        target = (target + 1) & mask;
+                    }
+                    keys[target] = oldKeys[slot];
+                    until[target] = oldUntil[slot];
+                    used++;
+                }
+            }
+        }
+
+        private static int hash(long key) {
+            long h = key * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32));
+        }
+    }
+}
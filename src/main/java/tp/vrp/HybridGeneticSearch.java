@@ -0,0 +1,479 @@
+package tp.vrp;
+
+import tp.vrp.Data.Instance;
+import tp.vrp.Data.RouteState;
+import tp.vrp.Data.Solution;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Hybrid genetic search (Vidal et al., 2012) on giant tours, route-first cluster-second.
+ * <p>
+ * An individual is a giant tour. Its fitness is the cost of its optimal {@link Split}, after an
+ * education step: local search on each route, {@link InterRouteSearch} and local search again,
+ * the educated routes giving back the giant tour. Offspring are bred with the ordered crossover
+ * (OX) from parents chosen by binary tournament on the biased fitness, which ranks individuals
+ * both by cost and by their contribution to the diversity of the population (broken-pairs
+ * distance to their closest neighbours). When the population exceeds {@code minimumSize +
+ * generationSize}, clones then the individuals of worst biased fitness are removed until
+ * {@code minimumSize} remain.
+ * <p>
+ * Each generation breeds one offspring per thread: parents are chosen sequentially, crossover
+ * and education run in parallel, and offspring join the population in a fixed order. Every
+ * offspring has its own random generator derived from the solver seed, so the search does
+ * not depend on thread scheduling.
+ */
+public class HybridGeneticSearch {
+
+    private static final double EPSILON = 1e-9;
+
+    private final Instance instance;
+    private final int threads;
+    private final long seed;
+    private int minimumSize = 25;
+    private int generationSize = 40;
+    private int eliteCount = 4;
+    private int closeCount = 5;
+    private SearchOptions options = SearchOptions.DEFAULT;
+
+    // Population, with the broken-pairs distance between every two individuals
+    private Individual[] population;
+    private double[][] proximity;
+    private int populationSize;
+
+    // Buffers of the biased fitness, sized to the capacity of the population
+    private int[] byCost;
+    private int[] byDiversity;
+    private double[] costs;
+    private double[] contribution;
+    private double[] closest;
+
+    private final AtomicReference<Solution> best = new AtomicReference<>();
+    private final ThreadLocal<Workspace> workspaces;
+
+    /**
+     * @param instance The instance to solve.
+     * @param threads  The number of worker threads.
+     * @param seed     The seed from which the generator of each offspring is derived.
+     */
+    public HybridGeneticSearch(Instance instance, int threads, long seed) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("The number of threads must be positive: " + threads);
+        }
+        this.instance = instance;
+        this.threads = threads;
+        this.seed = seed;
+        this.workspaces = ThreadLocal.withInitial(Workspace::new);
+    }
+
+    /**
+     * Sets the population sizes.
+     *
+     * @param minimumSize    The number of individuals kept by each survival step.
+     * @param generationSize The number of offspring added before a survival step.
+     */
+    public void setPopulation(int minimumSize, int generationSize) {
+        if (minimumSize < 2 || generationSize < 1) {
+            throw new IllegalArgumentException("Invalid population sizes: " + minimumSize + ", " + generationSize);
+        }
+        this.minimumSize = minimumSize;
+        this.generationSize = generationSize;
+    }
+
+    /**
+     * Sets the parameters of the biased fitness.
+     *
+     * @param eliteCount The number of best individuals whose rank is mostly driven by their cost.
+     * @param closeCount The number of closest individuals over which diversity is averaged.
+     */
+    public void setDiversity(int eliteCount, int closeCount) {
+        if (eliteCount < 0 || closeCount < 1) {
+            throw new IllegalArgumentException("Invalid diversity parameters: " + eliteCount + ", " + closeCount);
+        }
+        this.eliteCount = eliteCount;
+        this.closeCount = closeCount;
+    }
+
+    /**
+     * Sets the local search applied to the initial giant tours and to the routes of each offspring.
+     */
+    public void setSearchOptions(SearchOptions options) {
+        if (options == null) {
+            throw new IllegalArgumentException("The search options must not be null");
+        }
+        this.options = options;
+    }
+
+    /**
+     * Runs the genetic search until the iteration budget is spent.
+     *
+     * @param maxIterations             The maximum number of offspring.
+     * @param maxIterWithoutImprovement The number of offspring without improvement of the best solution before stopping.
+     * @return The best solution found.
+     */
+    public Solution solve(int maxIterations, int maxIterWithoutImprovement) {
+        int capacity = minimumSize + generationSize + threads;
+        population = new Individual[capacity];
+        proximity = new double[capacity][capacity];
+        populationSize = 0;
+        byCost = new int[capacity];
+        byDiversity = new int[capacity];
+        costs = new double[capacity];
+        contribution = new double[capacity];
+        closest = new double[capacity];
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            int created = 0;
+            // Initial population: locally optimal random giant tours
+            List<Callable<Individual>> batch = new ArrayList<>(4 * minimumSize);
+            for (int i = 0; i < 4 * minimumSize; i++) {
+                long individualSeed = seed(created++);
+                batch.add(() -> createRandom(new Random(individualSeed)));
+            }
+            insertAll(executor.invokeAll(batch));
+
+            int iteration = 0;
+            int lastImprovement = 0;
+            Random random = new Random(seed);
+            while (iteration < maxIterations && iteration - lastImprovement < maxIterWithoutImprovement) {
+                updateBiasedFitness();
+                batch.clear();
+                for (int t = 0; t < threads; t++) {
+                    Individual first = tournament(random);
+                    Individual second = tournament(random);
+                    long offspringSeed = seed(created++);
+                    batch.add(() -> breed(first, second, new Random(offspringSeed)));
+                    iteration++;
+                }
+                if (insertAll(executor.invokeAll(batch))) {
+                    lastImprovement = iteration;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Genetic search interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("An offspring evaluation failed", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+        return best.get();
+    }
+
+    /**
+     * @return The best solution found so far, or {@code null} if no individual has been evaluated yet.
+     */
+    public Solution getBest() {
+        return best.get();
+    }
+
+    private Individual createRandom(Random random) {
+        Tour tour = workspaces.get().tour;
+        RouteOptimizationAlgorithms.randomHeuristic(tour, random);
+        RouteOptimizationAlgorithms.applyLocalSearch(tour, options, null, 0);
+        tour.rotateToFront(instance.getDepotIndex());
+        return educate(tour);
+    }
+
+    private Individual breed(Individual first, Individual second, Random random) {
+        Tour tour = workspaces.get().tour;
+        orderedCrossover(first.chromosome, second.chromosome, random, tour);
+        return educate(tour);
+    }
+
+    /**
+     * Ordered crossover: the child inherits a random slice of the first parent, then the other
+     * customers in the order of the second parent, starting after the slice.
+     *
+     * @param child Receives the depot followed by the customers of the child.
+     */
+    private void orderedCrossover(int[] first, int[] second, Random random, Tour child) {
+        int n = first.length;
+        int start = random.nextInt(n);
+        int end = random.nextInt(n);
+        while (n > 1 && end == start) {
+            end = random.nextInt(n);
+        }
+
+        boolean[] inherited = child.marks;
+        int[] customers = child.scratch;
+        int count = 0;
+        for (int p = start; p != end; p = p + 1 == n ? 0 : p + 1) {
+            customers[count++] = first[p];
+            inherited[first[p]] = true;
+        }
+        customers[count++] = first[end];
+        inherited[first[end]] = true;
+        for (int q = 0; q < n; q++) {
+            int customer = second[(end + 1 + q) % n];
+            if (!inherited[customer]) {
+                customers[count++] = customer;
+            }
+        }
+
+        child.clear();
+        child.add(instance.getDepotIndex());
+        for (int p = 0; p < count; p++) {
+            inherited[customers[p]] = false;
+            child.add(customers[p]);
+        }
+    }
+
+    /**
+     * Splits a giant tour, improves the routes and builds the resulting individual.
+     *
+     * @param giantTour The giant tour, the depot first.
+     */
+    private Individual educate(Tour giantTour) {
+        Workspace workspace = workspaces.get();
+        List<List<Integer>> routes = workspace.split.split(giantTour);
+        routes = RouteOptimizationAlgorithms.applyLocalSearchOnSol(routes, instance, options, Deadline.NONE);
+        routes = workspace.interRouteSearch.optimize(routes);
+        routes = RouteOptimizationAlgorithms.applyLocalSearchOnSol(routes, instance, options, Deadline.NONE);
+        return new Individual(instance, routes);
+    }
+
+    /**
+     * Adds evaluated offspring to the population in submission order, and runs the survival step
+     * when the population is full.
+     *
+     * @return true if one of them improved the best solution.
+     */
+    private boolean insertAll(List<Future<Individual>> offspring) throws InterruptedException, ExecutionException {
+        boolean improved = false;
+        for (Future<Individual> future : offspring) {
+            Individual individual = future.get();
+            improved |= offer(individual);
+            insert(individual);
+            if (populationSize >= minimumSize + generationSize) {
+                survive();
+            }
+        }
+        return improved;
+    }
+
+    private void insert(Individual individual) {
+        int slot = populationSize++;
+        population[slot] = individual;
+        for (int other = 0; other < slot; other++) {
+            double distance = individual.brokenPairs(population[other]);
+            proximity[slot][other] = distance;
+            proximity[other][slot] = distance;
+        }
+        proximity[slot][slot] = 0;
+    }
+
+    private void remove(int slot) {
+        int last = --populationSize;
+        population[slot] = population[last];
+        population[last] = null;
+        for (int other = 0; other < populationSize; other++) {
+            proximity[slot][other] = proximity[last][other];
+            proximity[other][slot] = proximity[other][last];
+        }
+        proximity[slot][slot] = 0;
+    }
+
+    /**
+     * Removes clones, then the individuals of worst biased fitness, until {@code minimumSize} remain.
+     */
+    private void survive() {
+        while (populationSize > minimumSize) {
+            int removed = worstClone();
+            if (removed < 0) {
+                updateBiasedFitness();
+                removed = 0;
+                for (int slot = 1; slot < populationSize; slot++) {
+                    if (population[slot].biasedFitness > population[removed].biasedFitness) {
+                        removed = slot;
+                    }
+                }
+            }
+            remove(removed);
+        }
+    }
+
+    /**
+     * @return The slot of the most expensive individual having a clone, or -1 if there is none.
+     */
+    private int worstClone() {
+        int worst = -1;
+        for (int slot = 0; slot < populationSize; slot++) {
+            for (int other = 0; other < populationSize; other++) {
+                if (other != slot && proximity[slot][other] < EPSILON) {
+                    if (worst < 0 || population[slot].cost > population[worst].cost) {
+                        worst = slot;
+                    }
+                    break;
+                }
+            }
+        }
+        return worst;
+    }
+
+    /**
+     * Computes the biased fitness of every individual: its rank by cost plus a weighted rank by
+     * diversity contribution, both normalised to [0, 1].
+     */
+    private void updateBiasedFitness() {
+        int size = populationSize;
+        for (int slot = 0; slot < size; slot++) {
+            byCost[slot] = slot;
+            byDiversity[slot] = slot;
+            costs[slot] = population[slot].cost;
+            // Average distance to the closest individuals
+            int count = 0;
+            for (int other = 0; other < size; other++) {
+                if (other != slot) {
+                    closest[count++] = proximity[slot][other];
+                }
+            }
+            Arrays.sort(closest, 0, count);
+            int used = Math.min(closeCount, count);
+            double sum = 0;
+            for (int c = 0; c < used; c++) {
+                sum += closest[c];
+            }
+            contribution[slot] = used == 0 ? 0 : sum / used;
+        }
+        sortSlots(byCost, size, costs, false);
+        sortSlots(byDiversity, size, contribution, true);
+
+        double scale = Math.max(size - 1, 1);
+        double diversityWeight = 1 - Math.min(eliteCount, size) / (double) size;
+        for (int rank = 0; rank < size; rank++) {
+            population[byCost[rank]].biasedFitness = rank / scale;
+        }
+        for (int rank = 0; rank < size; rank++) {
+            population[byDiversity[rank]].biasedFitness += diversityWeight * rank / scale;
+        }
+    }
+
+    /**
+     * Sorts slots by their key with a stable insertion sort, which is cheap for populations of a
+     * few dozen individuals and does not box the slots.
+     *
+     * @param descending Whether the largest keys come first.
+     */
+    private static void sortSlots(int[] slots, int size, double[] keys, boolean descending) {
+        for (int i = 1; i < size; i++) {
+            int slot = slots[i];
+            double key = keys[slot];
+            int j = i - 1;
+            while (j >= 0 && (descending ? keys[slots[j]] < key : keys[slots[j]] > key)) {
+                slots[j + 1] = slots[j];
+                j--;
+            }
+            slots[j + 1] = slot;
+        }
+    }
+
+    private Individual tournament(Random random) {
+        Individual a = population[random.nextInt(populationSize)];
+        Individual b = population[random.nextInt(populationSize)];
+        return a.biasedFitness <= b.biasedFitness ? a : b;
+    }
+
+    /**
+     * Replaces the best solution if the individual is better.
+     *
+     * @return true if the individual became the best solution.
+     */
+    private boolean offer(Individual individual) {
+        Solution current = best.get();
+        if (current != null && individual.cost >= current.getCost() - EPSILON) {
+            return false;
+        }
+        List<Integer> giantTour = new ArrayList<>(individual.chromosome.length + 1);
+        giantTour.add(instance.getDepotId());
+        for (int customer : individual.chromosome) {
+            giantTour.add(instance.getIdOf(customer));
+        }
+        best.set(new Solution(giantTour, individual.routes, individual.cost));
+        SearchMetrics.recordBest(individual.cost);
+        SolverEvents.improvement(instance, "HGS", individual.cost);
+        return true;
+    }
+
+    private long seed(int individual) {
+        // SplitMix64 finaliser: decorrelates the seeds of consecutive individuals
+        long z = seed + (individual + 1) * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Educated individual: its routes, their cost, and the giant tour obtained by chaining them.
+     */
+    private static final class Individual {
+
+        final int[] chromosome;
+        final List<List<Integer>> routes;
+        final double cost;
+        // Neighbours of each customer in its route, the depot at the route ends
+        final int[] successor;
+        final int[] predecessor;
+        double biasedFitness;
+
+        Individual(Instance instance, List<List<Integer>> routes) {
+            int depot = instance.getDepotIndex();
+            this.routes = routes;
+            this.chromosome = new int[instance.size() - 1];
+            this.successor = new int[instance.size()];
+            this.predecessor = new int[instance.size()];
+            double total = 0;
+            int count = 0;
+            for (List<Integer> route : routes) {
+                RouteState state = new RouteState(instance, route);
+                total += state.distance();
+                for (int p = 1; p <= state.length(); p++) {
+                    int customer = state.get(p);
+                    chromosome[count++] = customer;
+                    predecessor[customer] = state.get(p - 1);
+                    successor[customer] = state.get(p + 1);
+                }
+            }
+            if (count != chromosome.length) {
+                throw new IllegalStateException("The routes visit " + count + " customers instead of " + chromosome.length);
+            }
+            this.cost = total;
+            predecessor[depot] = -1;
+            successor[depot] = -1;
+        }
+
+        /**
+         * @return The fraction of customers whose successor in this individual is neither their
+         * successor nor their predecessor in the other one.
+         */
+        double brokenPairs(Individual other) {
+            int broken = 0;
+            for (int customer : chromosome) {
+                int next = successor[customer];
+                if (next != other.successor[customer] && next != other.predecessor[customer]) {
+                    broken++;
+                }
+            }
+            return chromosome.length == 0 ? 0 : (double) broken / chromosome.length;
+        }
+    }
+
+    /**
+     * Per-thread buffers: none of these may be shared between threads.
+     */
+    private final class Workspace {
+        final Tour tour = new Tour(instance);
+        final Split split = new Split(instance);
+        final InterRouteSearch interRouteSearch = new InterRouteSearch(instance);
+    }
+}
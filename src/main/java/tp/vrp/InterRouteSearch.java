@@ -0,0 +1,354 @@
+package tp.vrp;
+
+import tp.vrp.Data.DistanceMatrix;
+import tp.vrp.Data.Instance;
+import tp.vrp.Data.NeighborLists;
+import tp.vrp.Data.RouteState;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Local search moving customers between the routes of a multi-vehicle solution: relocate,
+ * swap, 2-opt* (both tail exchanges) and CROSS-exchange of segments of up to
+ * {@link #MAX_SEGMENT} customers.
+ * <p>
+ * Moves are granular: for every customer u, only moves that create an edge between u and one
+ * of its nearest neighbours v in another route are evaluated. Each move only replaces a few
+ * edges, so its cost is evaluated in O(1), and the {@link RouteState} of each route gives the
+ * load of any segment or concatenation in O(1) for the capacity check. The first improving move
+ * is applied and only the tails of the two routes it touches are rewritten. Buffers are reused
+ * between calls, so one instance of this class must not be shared between threads.
+ */
+public class InterRouteSearch {
+
+    /** Maximum number of customers of a segment moved by a CROSS-exchange. */
+    public static final int MAX_SEGMENT = 3;
+
+    private static final double EPSILON = 1e-9;
+
+    private final Instance instance;
+    private final DistanceMatrix distances;
+    private final NeighborLists neighbors;
+    private final int depot;
+    private final double capacity;
+
+    private int routeCount;
+    private RouteState[] routes;
+    private final int[] routeOf;
+    private final int[] positionOf;
+
+    private final int[] bufferA;
+    private final int[] bufferB;
+
+    public InterRouteSearch(Instance instance) {
+        this(instance, NeighborLists.DEFAULT_SIZE);
+    }
+
+    /**
+     * @param instance      The instance the routes belong to.
+     * @param neighborCount The number of nearest neighbours considered for each customer.
+     */
+    public InterRouteSearch(Instance instance, int neighborCount) {
+        this.instance = instance;
+        this.distances = instance.getDistances();
+        this.neighbors = instance.getNeighbors(neighborCount);
+        this.depot = instance.getDepotIndex();
+        this.capacity = instance.getCapacity();
+        int n = instance.size();
+        this.routeOf = new int[n];
+        this.positionOf = new int[n];
+        this.bufferA = new int[n + 2];
+        this.bufferB = new int[n + 2];
+    }
+
+    /**
+     * Applies improving inter-route moves until none remains.
+     *
+     * @param routes The routes, as lists of node IDs starting and ending at the depot.
+     * @return The improved routes, in the same format; routes left empty are dropped.
+     */
+    public List<List<Integer>> optimize(List<List<Integer>> routes) {
+        return optimize(routes, Deadline.NONE);
+    }
+
+    /**
+     * Applies improving inter-route moves until none remains or the deadline passes.
+     *
+     * @param routes   The routes, as lists of node IDs starting and ending at the depot.
+     * @param deadline The time after which no other move is searched.
+     * @return The improved routes, in the same format; routes left empty are dropped.
+     */
+    public List<List<Integer>> optimize(List<List<Integer>> routes, Deadline deadline) {
+        long start = SearchMetrics.start();
+        search(routes, deadline);
+        SearchMetrics.stop(SearchMetrics.Phase.INTER_ROUTE, start);
+        return collect();
+    }
+
+    /**
+     * Loads the routes and applies improving moves until none remains or the deadline passes.
+     */
+    private void search(List<List<Integer>> routes, Deadline deadline) {
+        load(routes);
+
+        boolean improved = true;
+        while (improved) {
+            improved = false;
+            for (int u = 0; u < instance.size(); u++) {
+                if (u == depot) {
+                    continue;
+                }
+                if (deadline.expired()) {
+                    return;
+                }
+                for (int r = 0; r < neighbors.getK(); r++) {
+                    int v = neighbors.get(u, r);
+                    if (v == depot || routeOf[u] == routeOf[v]) {
+                        continue;
+                    }
+                    if (relocate(u, v) || swap(u, v) || twoOptStar(u, v) || crossExchange(u, v)) {
+                        improved = true;
+                        break;
+                    }
+                }
+            }
+        }
+    }
+
+    private void load(List<List<Integer>> solution) {
+        routeCount = 0;
+        routes = new RouteState[solution.size()];
+        for (List<Integer> route : solution) {
+            RouteState state = new RouteState(instance, route);
+            if (state.length() > 0) {
+                routes[routeCount] = state;
+                indexTail(routeCount++, 1);
+            }
+        }
+    }
+
+    /**
+     * Records the route and position of the customers of route r from position {@code from} on.
+     */
+    private void indexTail(int r, int from) {
+        RouteState route = routes[r];
+        for (int p = from; p <= route.length(); p++) {
+            routeOf[route.get(p)] = r;
+            positionOf[route.get(p)] = p;
+        }
+    }
+
+    private double d(int a, int b) {
+        return distances.get(a, b);
+    }
+
+    /**
+     * Moves u right after or right before v.
+     */
+    private boolean relocate(int u, int v) {
+        RouteState a = routes[routeOf[u]];
+        RouteState b = routes[routeOf[v]];
+        if (b.load() + instance.getDemand(u) > capacity + EPSILON) {
+            return false;
+        }
+        int i = positionOf[u];
+        int j = positionOf[v];
+        int uPrev = a.get(i - 1);
+        int uNext = a.get(i + 1);
+        double removal = d(uPrev, uNext) - d(uPrev, u) - d(u, uNext);
+
+        int vNext = b.get(j + 1);
+        int vPrev = b.get(j - 1);
+        double after = removal + d(v, u) + d(u, vNext) - d(v, vNext);
+        double before = removal + d(vPrev, u) + d(u, v) - d(vPrev, v);
+        if (Math.min(after, before) > -EPSILON) {
+            return false;
+        }
+
+        int insertAt = after <= before ? j + 1 : j; // Position of u in route b
+        int countA = append(bufferA, 0, a, i + 1, a.length(), false);
+        bufferB[0] = u;
+        int countB = append(bufferB, 1, b, insertAt, b.length(), false);
+        apply(routeOf[u], i, countA, routeOf[v], insertAt, countB);
+        return true;
+    }
+
+    /**
+     * Exchanges u and v.
+     */
+    private boolean swap(int u, int v) {
+        RouteState a = routes[routeOf[u]];
+        RouteState b = routes[routeOf[v]];
+        double demandU = instance.getDemand(u);
+        double demandV = instance.getDemand(v);
+        if (a.load() - demandU + demandV > capacity + EPSILON || b.load() - demandV + demandU > capacity + EPSILON) {
+            return false;
+        }
+        int i = positionOf[u];
+        int j = positionOf[v];
+        int uPrev = a.get(i - 1);
+        int uNext = a.get(i + 1);
+        int vPrev = b.get(j - 1);
+        int vNext = b.get(j + 1);
+        double delta = d(uPrev, v) + d(v, uNext) - d(uPrev, u) - d(u, uNext)
+                + d(vPrev, u) + d(u, vNext) - d(vPrev, v) - d(v, vNext);
+        if (delta > -EPSILON) {
+            return false;
+        }
+
+        bufferA[0] = v;
+        int countA = append(bufferA, 1, a, i + 1, a.length(), false);
+        bufferB[0] = u;
+        int countB = append(bufferB, 1, b, j + 1, b.length(), false);
+        apply(routeOf[u], i, countA, routeOf[v], j, countB);
+        return true;
+    }
+
+    /**
+     * Exchanges route ends so that u and v become adjacent, in both possible ways.
+     */
+    private boolean twoOptStar(int u, int v) {
+        RouteState a = routes[routeOf[u]];
+        RouteState b = routes[routeOf[v]];
+        int i = positionOf[u];
+        int j = positionOf[v];
+
+        // A[..i] + B[j..]  and  B[..j-1] + A[i+1..]
+        double tails = a.joinDistance(i, b, j) + b.joinDistance(j - 1, a, i + 1) - a.distance() - b.distance();
+        if (tails < -EPSILON
+                && a.joinLoad(i, b, j) <= capacity + EPSILON
+                && b.joinLoad(j - 1, a, i + 1) <= capacity + EPSILON) {
+            int countA = append(bufferA, 0, b, j, b.length(), false);
+            int countB = append(bufferB, 0, a, i + 1, a.length(), false);
+            apply(routeOf[u], i + 1, countA, routeOf[v], j, countB);
+            return true;
+        }
+
+        // A[..i] + reversed B[1..j]  and  reversed A[i+1..] + B[j+1..]
+        int uNext = a.get(i + 1);
+        int vNext = b.get(j + 1);
+        double heads = d(u, v) + d(uNext, vNext) - d(u, uNext) - d(v, vNext);
+        if (heads < -EPSILON
+                && a.prefixLoad(i) + b.prefixLoad(j) <= capacity + EPSILON
+                && a.suffixLoad(i + 1) + b.suffixLoad(j + 1) <= capacity + EPSILON) {
+            int countA = append(bufferA, 0, b, 1, j, true);
+            int countB = append(bufferB, 0, a, i + 1, a.length(), true);
+            countB = append(bufferB, countB, b, j + 1, b.length(), false);
+            apply(routeOf[u], i + 1, countA, routeOf[v], 1, countB);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Exchanges the segment of up to {@link #MAX_SEGMENT} customers following u with the segment
+     * of 1 to {@link #MAX_SEGMENT} customers starting at v, so that v follows u.
+     */
+    private boolean crossExchange(int u, int v) {
+        RouteState a = routes[routeOf[u]];
+        RouteState b = routes[routeOf[v]];
+        int i = positionOf[u];
+        int j = positionOf[v];
+        int bPrev = b.get(j - 1);
+
+        double bestDelta = -EPSILON;
+        int bestK = -1;
+        int bestL = -1;
+        for (int k = 0; k <= MAX_SEGMENT && i + k <= a.length(); k++) {
+            int aFirst = a.get(i + 1);
+            int aLast = a.get(i + k);
+            int aNext = a.get(i + k + 1);
+            double segmentA = k == 0 ? 0 : a.segmentLoad(i + 1, i + k);
+            for (int l = 1; l <= MAX_SEGMENT && j + l - 1 <= b.length(); l++) {
+                int bLast = b.get(j + l - 1);
+                int bNext = b.get(j + l);
+                double segmentB = b.segmentLoad(j, j + l - 1);
+                if (a.load() - segmentA + segmentB > capacity + EPSILON || b.load() - segmentB + segmentA > capacity + EPSILON) {
+                    continue;
+                }
+                double delta;
+                if (k == 0) {
+                    delta = d(u, v) + d(bLast, aNext) + d(bPrev, bNext)
+                            - d(u, aNext) - d(bPrev, v) - d(bLast, bNext);
+                } else {
+                    delta = d(u, v) + d(bLast, aNext) + d(bPrev, aFirst) + d(aLast, bNext)
+                            - d(u, aFirst) - d(aLast, aNext) - d(bPrev, v) - d(bLast, bNext);
+                }
+                if (delta < bestDelta) {
+                    bestDelta = delta;
+                    bestK = k;
+                    bestL = l;
+                }
+            }
+        }
+        if (bestK < 0) {
+            return false;
+        }
+
+        int countA = append(bufferA, 0, b, j, j + bestL - 1, false);
+        countA = append(bufferA, countA, a, i + bestK + 1, a.length(), false);
+        int countB = append(bufferB, 0, a, i + 1, i + bestK, false);
+        countB = append(bufferB, countB, b, j + bestL, b.length(), false);
+        apply(routeOf[u], i + 1, countA, routeOf[v], j, countB);
+        return true;
+    }
+
+    /**
+     * Appends the customers at positions from..to (inclusive) of a route to a buffer.
+     *
+     * @return The new number of entries in the buffer.
+     */
+    private static int append(int[] buffer, int count, RouteState route, int from, int to, boolean reversed) {
+        if (reversed) {
+            for (int p = to; p >= from; p--) {
+                buffer[count++] = route.get(p);
+            }
+        } else {
+            for (int p = from; p <= to; p++) {
+                buffer[count++] = route.get(p);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Rewrites the tails of routes a and b from the buffers, and drops the routes left empty.
+     *
+     * @param fromA  The first position of route a replaced by {@code bufferA}.
+     * @param countA The number of entries of {@code bufferA}.
+     * @param fromB  The first position of route b replaced by {@code bufferB}.
+     * @param countB The number of entries of {@code bufferB}.
+     */
+    private void apply(int a, int fromA, int countA, int b, int fromB, int countB) {
+        routes[a].setTail(fromA, bufferA, countA);
+        routes[b].setTail(fromB, bufferB, countB);
+        indexTail(a, fromA);
+        indexTail(b, fromB);
+        // Drop b first: moving the last route into a's slot must not move b
+        if (routes[b].length() == 0) {
+            removeRoute(b);
+        }
+        if (routes[a == routeCount ? b : a].length() == 0) {
+            removeRoute(a == routeCount ? b : a);
+        }
+    }
+
+    private void removeRoute(int r) {
+        int last = --routeCount;
+        if (r == last) {
+            return;
+        }
+        routes[r] = routes[last];
+        routes[last] = null;
+        indexTail(r, 1);
+    }
+
+    private List<List<Integer>> collect() {
+        List<List<Integer>> solution = new ArrayList<>(routeCount);
+        for (int r = 0; r < routeCount; r++) {
+            solution.add(routes[r].toIds());
+        }
+        return solution;
+    }
+}
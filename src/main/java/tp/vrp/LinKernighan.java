@@ -0,0 +1,238 @@
+package tp.vrp;
+
+import tp.vrp.Data.DistanceMatrix;
+import tp.vrp.Data.NeighborLists;
+
+/**
+ * In-place Lin-Kernighan style variable-depth search on a closed tour.
+ * <p>
+ * A move starts by breaking an edge (t1, t2) of the tour. Each step then adds an edge from the
+ * free end t2 to a candidate neighbour t3 and breaks the edge (t3, t4) that keeps a Hamiltonian
+ * path, t4 becoming the new free end; closing the path with (t4, t1) gives a valid tour after
+ * every step, so each step is applied as a 2-opt exchange. The chain goes on while the
+ * cumulated gain stays positive, up to {@link #MAX_DEPTH} steps, and is then rolled back to the
+ * step with the best closed tour. All candidates are tried for the first step, the best one
+ * only for the following steps, and nodes already in the chain cannot be used again.
+ * <p>
+ * The tour stays an array of node indices: each exchange reverses the shorter side of the tour,
+ * so a step costs at most half the tour length. Don't-look bits restrict the search to the
+ * nodes whose surroundings changed, as in the neighbour-list {@link TwoOpt}.
+ */
+public final class LinKernighan {
+
+    /** Maximum number of exchanges of a move. */
+    public static final int MAX_DEPTH = 12;
+
+    private final int[] tour;
+    private final int[] pos;
+    private final int size;
+    private final DistanceMatrix distances;
+    private final NeighborLists neighbors;
+
+    // FIFO of nodes whose don't-look bit is off, borrowed from the tour
+    private final int[] queue;
+    private final boolean[] queued;
+    private int head;
+    private int count;
+
+    // Nodes of the current chain: t1, t2, then t3 and t4 of every step
+    private final int[] chain = new int[2 * MAX_DEPTH + 2];
+    private int chainLength;
+
+    private LinKernighan(Tour tour, DistanceMatrix distances, NeighborLists neighbors) {
+        this.tour = tour.nodes();
+        this.pos = tour.positions();
+        this.size = tour.size();
+        this.distances = distances;
+        this.neighbors = neighbors;
+        this.queue = tour.scratch;
+        this.queued = tour.marks;
+    }
+
+    /**
+     * Applies variable-depth moves until no active node remains.
+     * The tour may hold only a subset of the instance nodes; neighbours outside the tour are ignored.
+     *
+     * @param tour        The tour, modified in place; its first node stays at position 0.
+     * @param distances   The distance matrix of the instance.
+     * @param neighbors   The candidate lists of the instance.
+     * @param active      The nodes to examine first, or {@code null} to examine every node of the tour.
+     * @param activeCount The number of valid entries in {@code active}.
+     * @return The total length removed from the tour.
+     */
+    public static double optimize(Tour tour, DistanceMatrix distances, NeighborLists neighbors,
+                                  int[] active, int activeCount) {
+        if (tour.size() < 5) {
+            return 0;
+        }
+        return new LinKernighan(tour, distances, neighbors).run(active, activeCount);
+    }
+
+    private double run(int[] active, int activeCount) {
+        if (active == null) {
+            for (int p = 0; p < size; p++) {
+                enqueue(tour[p]);
+            }
+        } else {
+            for (int q = 0; q < activeCount; q++) {
+                if (pos[active[q]] >= 0) {
+                    enqueue(active[q]);
+                }
+            }
+        }
+
+        int first = tour[0];
+        double totalGain = 0;
+        while (count > 0) {
+            int t1 = queue[head];
+            head = head + 1 == queue.length ? 0 : head + 1;
+            count--;
+            queued[t1] = false;
+
+            for (int direction = 0; direction < 2; direction++) {
+                int p = pos[t1];
+                int t2 = tour[direction == 0 ? TwoOpt.next(p, size) : TwoOpt.previous(p, size)];
+                double gain = improve(t1, t2);
+                if (gain > 0) {
+                    totalGain += gain;
+                    for (int c = 0; c < chainLength; c++) {
+                        enqueue(chain[c]);
+                    }
+                    break;
+                }
+            }
+        }
+
+        TwoOpt.rotateToFront(tour, pos, size, first, queue);
+        return totalGain;
+    }
+
+    /**
+     * Searches for an improving move breaking the edge (t1, t2) and applies it.
+     *
+     * @return The length removed from the tour, or 0 if no improving move was found.
+     */
+    private double improve(int t1, int t2) {
+        double removed = d(t1, t2);
+        int k = neighbors.getK();
+        for (int r = 0; r < k; r++) {
+            int t3 = neighbors.get(t2, r);
+            if (pos[t3] < 0) {
+                continue;
+            }
+            double gain = removed - d(t2, t3);
+            if (gain <= TwoOpt.EPSILON) {
+                break; // Neighbours are sorted: no further positive gain
+            }
+            int t4 = t4(t1, t2, t3);
+            if (t3 == t1 || t4 == t2 || t4 == t1) {
+                continue;
+            }
+            chain[0] = t1;
+            chain[1] = t2;
+            chainLength = 2;
+            double result = deepen(t1, t2, t3, t4, gain + d(t3, t4));
+            if (result > 0) {
+                return result;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Applies the first step (t1, t2, t3, t4) and extends the chain greedily, then rolls it back to
+     * its best closed tour.
+     *
+     * @param gain The cumulated gain once (t3, t4) is broken, before the closing edge (t4, t1).
+     * @return The length removed by the kept steps, 0 if the whole chain was rolled back.
+     */
+    private double deepen(int t1, int t2, int t3, int t4, double gain) {
+        double bestGain = 0;
+        int bestDepth = 0;
+        int depth = 0;
+        while (true) {
+            // Add (t2, t3) and (t4, t1), break (t1, t2) and (t3, t4)
+            TwoOpt.exchange(tour, pos, size, t2, t1, t3);
+            chain[chainLength++] = t3;
+            chain[chainLength++] = t4;
+            depth++;
+            double closed = gain - d(t4, t1);
+            if (closed > bestGain + TwoOpt.EPSILON) {
+                bestGain = closed;
+                bestDepth = depth;
+            }
+            if (depth == MAX_DEPTH) {
+                break;
+            }
+
+            // Best next step from the new free end
+            t2 = t4;
+            int k = neighbors.getK();
+            double bestScore = Double.NEGATIVE_INFINITY;
+            int nextT3 = -1;
+            int nextT4 = -1;
+            for (int r = 0; r < k; r++) {
+                int c = neighbors.get(t2, r);
+                if (pos[c] < 0) {
+                    continue;
+                }
+                double partial = gain - d(t2, c);
+                if (partial <= TwoOpt.EPSILON) {
+                    break;
+                }
+                int e = t4(t1, t2, c);
+                if (e == t2 || inChain(c) || inChain(e)) {
+                    continue;
+                }
+                double score = partial + d(c, e);
+                if (score > bestScore) {
+                    bestScore = score;
+                    nextT3 = c;
+                    nextT4 = e;
+                }
+            }
+            if (nextT3 < 0) {
+                break;
+            }
+            t3 = nextT3;
+            t4 = nextT4;
+            gain = bestScore;
+        }
+
+        // Roll back the steps after the best closed tour: step i added (t2, t3) and (t1, t4)
+        for (int step = depth; step > bestDepth; step--) {
+            int stepT2 = chain[2 * step - 1];
+            int stepT3 = chain[2 * step];
+            TwoOpt.exchange(tour, pos, size, stepT2, stepT3, t1);
+        }
+        chainLength = 2 * bestDepth + 2;
+        return bestGain;
+    }
+
+    /**
+     * @return The neighbour of t3 lying on the same side as t1 lies from t2, so that breaking
+     * (t3, t4) after adding (t2, t3) leaves a Hamiltonian path from t4 to t1.
+     */
+    private int t4(int t1, int t2, int t3) {
+        boolean forward = pos[t1] == TwoOpt.next(pos[t2], size);
+        int p = pos[t3];
+        return tour[forward ? TwoOpt.next(p, size) : TwoOpt.previous(p, size)];
+    }
+
+    private boolean inChain(int node) {
+        for (int c = 0; c < chainLength; c++) {
+            if (chain[c] == node) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private double d(int a, int b) {
+        return distances.get(a, b);
+    }
+
+    private void enqueue(int node) {
+        count = TwoOpt.enqueue(queue, queued, head, count, node);
+    }
+}
@@ -1,173 +1,148 @@
 package tp.vrp;
 
+import tp.vrp.Data.Instance;
 import tp.vrp.Data.Node;
-import tp.vrp.Data.Request;
-import tp.vrp.Data.Vehicule;
+import tp.vrp.Data.Solution;
 import tp.vrp.parser.XMLParser;
-import tp.vrp.Data.Edge;
 
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.*;
-import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
+import java.util.concurrent.CompletableFuture;
 
 public class Main {
 
-
+    /**
+     * Usage: {@code Main [instance.xml] [hgs|alns|tabu|multistart|anytime [seconds]]}. The default
+     * instance is JDD01.xml and the default mode is the hybrid genetic search; the ALNS, started from
+     * the split of the nearest neighbour tour, and the multi-start ILS are faster but give
+     * lower-quality solutions. The granular tabu search, started from the same split, is
+     * deterministic. The anytime mode stops after the given number of seconds (10 by default) and
+     * prints each new best cost as soon as it is found. The {@code start} system property chooses
+     * the initial routes of the ALNS and of the tabu search: {@code split} (default) or
+     * {@code savings}, the Clarke-Wright {@link SavingsAlgorithm}.
+     * <p>
+     * The solution is printed in the layout of the {@code JDD*_RESULTS.txt} files, and also written
+     * to the file given by the {@code results} system property, if any, in the format given by its
+     * extension (.txt, .csv or .json). With the {@code trace} system property, {@link SearchMetrics}
+     * are collected, the time-vs-best-cost trace is written to that CSV file and the counters and
+     * phase times are printed. Search progress is logged with {@link java.util.logging},
+     * at most once per second.
+     */
     public static void main(String[] args) {
 
+        String file = args.length > 0 ? args[0] : "JDD01.xml";
+        String mode = args.length > 1 ? args[1] : "hgs";
+
+        String trace = System.getProperty("trace");
+        if (trace != null) {
+            SearchMetrics.enable();
+        }
 
         XMLParser parser = new XMLParser();
-        parser.parseXMLFile("JDD01.xml");
+        parser.parseXMLFile(file);
         List<Node> nodes = parser.getNodeList();
-        List<Request> requests = parser.getRequestList();
-        List<Vehicule> vehicules = parser.getVehicleList();
+        Instance instance = parser.getInstance();
 
 
-        List<Integer> dumbPath = RouteOptimizationAlgorithms.dumbHeuristic(nodes);
+        List<Integer> dumbPath = RouteOptimizationAlgorithms.dumbHeuristic(instance);
 
-        double minDistance = Double.MAX_VALUE;
-        List<Integer> bestSolution = new ArrayList<>();
-        List<List<Integer>> bestSolutionsForVehicles = new ArrayList<>();
         long startTime = System.nanoTime();
 
-        for (int i = 0; i < 2; i++) {
-            List<Integer> ilsResult = RouteOptimizationAlgorithms.iteratedLocalSearchWithTwoOpt(
-                    RouteOptimizationAlgorithms.randomHeuristic(nodes), nodes, 150, 10);
-            double currentDistance = NodeUtil.totalDistance(ilsResult, nodes);
-            System.out.println("ILS distance sequence " + i + " " + currentDistance);
-
-            List<Integer> shortestPath = NodeUtil.reorderListWithDepotFirst(ilsResult, nodes, 0);
-
-            List<List<Integer>> solutions = computeSolFromSegment(shortestPath, nodes, requests, vehicules);
-            solutions = RouteOptimizationAlgorithms.apply2OptOnSol(solutions, nodes);
+        int threads = Runtime.getRuntime().availableProcessors();
+        Solution best;
+        switch (mode) {
+            case "hgs":
+                best = new HybridGeneticSearch(instance, threads, startTime).solve(20_000, 2_000);
+                break;
+            case "alns":
+                best = new AdaptiveLargeNeighborhoodSearch(instance, startTime)
+                        .solve(initialRoutes(dumbPath, instance), 20_000);
+                break;
+            case "tabu":
+                best = new GranularTabuSearch(instance)
+                        .solve(initialRoutes(dumbPath, instance), 5_000, 1_000);
+                break;
+            case "anytime":
+                AnytimeSolver solver = new AnytimeSolver(instance, threads, startTime);
+                CompletableFuture<Void> improvements =
+                        solver.onImprovement(solution -> System.out.printf("New best distance: %f%n", solution.getCost()));
+                long seconds = args.length > 2 ? Long.parseLong(args[2]) : 10;
+                best = solver.solve(Duration.ofSeconds(seconds));
+                // Let the consumer print the last improvements before the final solution
+                improvements.join();
+                break;
+            case "multistart":
+                best = new MultiStartSolver(instance, threads, startTime).solve(Math.max(2, threads));
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown mode: " + mode + " (expected hgs, alns, tabu, multistart or anytime)");
+        }
 
-            double routeDIs = NodeUtil.getRouteRes(solutions, nodes);
-            // Check if the current distance is less than the minimum distance found so far
-            if (routeDIs < minDistance) {
-                minDistance = routeDIs;
-                bestSolution = new ArrayList<>(shortestPath);
-                bestSolutionsForVehicles = new ArrayList<>(solutions); // Store the best solutions for each vehicle
+        List<Integer> bestSolution = best.getGiantTour();
+        List<List<Integer>> bestSolutionsForVehicles = best.getRoutes();
+        Duration elapsedTime = Duration.ofNanos(System.nanoTime() - startTime);
+
+        // Print the best overall solution in the layout of the results files, and save it if requested
+        System.out.println("Best Overall Distance: " + best.getCost());
+        ResultWriter writer = new ResultWriter(instance);
+        try {
+            writer.write(best, elapsedTime, ResultWriter.Format.TXT, new OutputStreamWriter(System.out));
+            String results = System.getProperty("results");
+            if (results != null) {
+                writer.write(best, elapsedTime, Path.of(results));
             }
-
-            NodeUtil.printRouteResults(solutions, nodes);
-            //TourPlotter.plotTours(solutions, nodes);
-            //TourPlotter.plotSequence(shortestPath, nodes);
+            if (trace != null) {
+                try (Writer out = Files.newBufferedWriter(Path.of(trace))) {
+                    SearchMetrics.writeTrace(out);
+                }
+                System.out.print(SearchMetrics.summary());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot write the results", e);
         }
-        long endTime = System.nanoTime();
-        // Calculate elapsed time in milliseconds
-        long duration = (endTime - startTime) / 1_000_000_000; // Convert to milliseconds
-
-        // Print or process the best overall solution after all iterations
-        System.out.println("Best Overall Distance: " + minDistance);
-        NodeUtil.printRouteResults(bestSolutionsForVehicles, nodes);
         TourPlotter.plotTours(bestSolutionsForVehicles, nodes);
         TourPlotter.plotSequence(bestSolution, nodes);
-        System.out.println("Execution Time: " + duration + " seconds");
-        double rescapa = NodeUtil.getResidualCapa(bestSolutionsForVehicles, nodes, requests, vehicules.getFirst().getCapacityInitial());
-
-        System.out.println("Total res capa = : " + rescapa + " moyenne " + rescapa/bestSolutionsForVehicles.size());
-
     }
 
-
-
-
-
-
-
-    private static List<Integer> ford(int start, int end, List<Edge> edges, int numVertices) {
-        double[] distances = new double[numVertices];
-        int[] predecessors = new int[numVertices];
-        Arrays.fill(distances, Double.MAX_VALUE);
-        distances[start] = 0;
-        Arrays.fill(predecessors, -1);
-
-        // Relax edges repeatedly
-        for (int i = 1; i < numVertices - 1; i++) {
-            for (Edge edge : edges) {
-                if (distances[edge.source] + edge.weight < distances[edge.destination]) {
-                    distances[edge.destination] = distances[edge.source] + edge.weight;
-                    predecessors[edge.destination] = edge.source;
-                }
-            }
+    /**
+     * @return The initial routes chosen by the {@code start} system property: the split of the
+     * giant tour, or the Clarke-Wright savings routes.
+     */
+    private static List<List<Integer>> initialRoutes(List<Integer> giantTour, Instance instance) {
+        String start = System.getProperty("start", "split");
+        switch (start) {
+            case "split":
+                return computeSolFromSegment(giantTour, instance);
+            case "savings":
+                return new SavingsAlgorithm(instance).calculateRoutes();
+            default:
+                throw new IllegalArgumentException("Unknown start: " + start + " (expected split or savings)");
         }
-
-        // Reconstruct path from start to end
-        List<Integer> path = new ArrayList<>();
-        int current = end;
-        while (current != -1 && current != start) {
-            path.add(0, current); // Add Node corresponding to index 'current'
-            current = predecessors[current];
-        }
-        if (current != -1) {
-            path.add(0, start);
-        }
-
-        return path;
     }
 
-
-
-
-
-
-
-
-    public static List<List<Integer>> computeSolFromSegment(List<Integer> shortestPath, List<Node> nodes, List<Request> requests, List<Vehicule> vehicules){
-        List<Edge> edges = new ArrayList<>();
-        int depotId = NodeUtil.findStartNode(nodes).id;
-        for (int i = 0; i < shortestPath.size(); i++) {
-            double current_load = 0;
-            double current_distance = 0;
-
-            for (int y = i + 1; y < shortestPath.size(); y++) {
-                Node previous_node = NodeUtil.findNodeById(shortestPath.get(y - 1), nodes);
-                Node current_node = NodeUtil.findNodeById(shortestPath.get(y), nodes);
-                current_distance += Node.GetDistance(previous_node, current_node);
-
-
-                Request current_request = null;
-                if (requests.stream().anyMatch(request -> request.getNode() == current_node.id)) {
-                    current_request = requests.stream().filter(request -> request.getNode() == current_node.id).findFirst().get();
-                    if (current_request.getQuantity() + current_load <= vehicules.get(0).getCapacityInitial()) {
-                        current_load += current_request.getQuantity();
-
-                        edges.add(new Edge(shortestPath.get(i), current_node.id, current_distance + Node.GetDistance(current_node, NodeUtil.findStartNode(nodes))));
-
-                    } else
-                        break;
-                } else
-                    break;
-
-            }
-
-
-        }
-
-        //Ford algo:
-        List<Integer> edgesList = ford(shortestPath.getFirst(), shortestPath.getLast(), edges, shortestPath.size() + 1);
-
-        int currentNodeStopId = 1;
-        List<List<Integer>> solutions = new ArrayList<>();
-        List<Integer> sol = new ArrayList<>();
-        sol.add(depotId);
-        for (int i = 1; i < shortestPath.size(); i++) {
-            if (Objects.equals(shortestPath.get(i), edgesList.get(currentNodeStopId))) {
-                sol.add(shortestPath.get(i));
-                sol.add(depotId);
-                //sol.requestArrayList = (ArrayList<Request>) requests;
-                solutions.add(sol);
-                sol = new ArrayList<>();
-                sol.add(depotId);
-                if (currentNodeStopId < edgesList.size() - 1)
-                    currentNodeStopId++;
-            } else {
-                sol.add(shortestPath.get(i));
+    /**
+     * Splits a giant tour into capacity-feasible routes with the linear {@link Split}.
+     *
+     * @param shortestPath The giant tour, as node IDs; depot occurrences are ignored.
+     * @param instance The instance the tour belongs to.
+     * @return The routes, as lists of node IDs starting and ending at the depot.
+     */
+    public static List<List<Integer>> computeSolFromSegment(List<Integer> shortestPath, Instance instance){
+        int depotId = instance.getDepotId();
+        int[] tour = new int[shortestPath.size()];
+        int size = 0;
+        for (int id : shortestPath) {
+            if (id != depotId) {
+                tour[size++] = instance.getIndexOf(id);
             }
         }
-        return solutions;
+        return new Split(instance).split(tour, size);
     }
 
 
@@ -0,0 +1,153 @@
+package tp.vrp;
+
+import tp.vrp.Data.Instance;
+import tp.vrp.Data.Solution;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Runs independent ILS starts in parallel: random giant tour, iterated local search with the
+ * {@link SearchOptions} of the solver, split into routes, inter-route moves
+ * ({@link InterRouteSearch}) and the same local search on each route. Every start has its own
+ * random generator derived from the solver seed, so the result of a start does not depend on the
+ * number of threads, and the best solution is kept in a lock-free holder.
+ */
+public class MultiStartSolver {
+
+    private final Instance instance;
+    private final int threads;
+    private final long seed;
+    private int maxIter = 150;
+    private int maxIterWithoutImprovement = 10;
+    private SearchOptions options = SearchOptions.DEFAULT;
+
+    private final AtomicReference<Solution> best = new AtomicReference<>();
+
+    /**
+     * @param instance The instance to solve.
+     * @param threads  The number of worker threads.
+     * @param seed     The seed from which the generator of each start is derived.
+     */
+    public MultiStartSolver(Instance instance, int threads, long seed) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("The number of threads must be positive: " + threads);
+        }
+        this.instance = instance;
+        this.threads = threads;
+        this.seed = seed;
+    }
+
+    /**
+     * Sets the iteration budget of each ILS start.
+     *
+     * @param maxIter The maximum number of ILS iterations.
+     * @param maxIterWithoutImprovement The maximum number of iterations without improvement before a start stops.
+     */
+    public void setIterations(int maxIter, int maxIterWithoutImprovement) {
+        this.maxIter = maxIter;
+        this.maxIterWithoutImprovement = maxIterWithoutImprovement;
+    }
+
+    /**
+     * Sets the local search and acceptance criterion of the ILS starts, also used on the routes.
+     */
+    public void setSearchOptions(SearchOptions options) {
+        if (options == null) {
+            throw new IllegalArgumentException("The search options must not be null");
+        }
+        this.options = options;
+    }
+
+    /**
+     * Runs the given number of starts on the thread pool and waits for all of them.
+     *
+     * @param starts The number of independent starts.
+     * @return The best solution found.
+     */
+    public Solution solve(int starts) {
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, starts));
+        try {
+            List<Future<Solution>> futures = new ArrayList<>(starts);
+            for (int i = 0; i < starts; i++) {
+                int start = i;
+                futures.add(executor.submit(() -> runStart(start, new Random(startSeed(start)))));
+            }
+            for (Future<Solution> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Multi-start interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("A start failed", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+        return best.get();
+    }
+
+    /**
+     * @return The best solution found so far, or {@code null} if no start has finished yet.
+     */
+    public Solution getBest() {
+        return best.get();
+    }
+
+    private Solution runStart(int start, Random random) {
+        SolverEvents.MultiStartIteration event = new SolverEvents.MultiStartIteration();
+        event.begin();
+        Tour initialRoute = new Tour(instance);
+        RouteOptimizationAlgorithms.randomHeuristic(initialRoute, random);
+        Tour giantTour = RouteOptimizationAlgorithms.iteratedLocalSearch(initialRoute, maxIter, maxIterWithoutImprovement, random,
+                options, Deadline.NONE);
+        giantTour.rotateToFront(instance.getDepotIndex());
+
+        List<List<Integer>> routes = new Split(instance).split(giantTour);
+        routes = RouteOptimizationAlgorithms.applyLocalSearchOnSol(routes, instance, options, Deadline.NONE);
+        // Inter-route moves start from locally optimal routes and may leave crossings inside a route
+        routes = new InterRouteSearch(instance).optimize(routes);
+        routes = RouteOptimizationAlgorithms.applyLocalSearchOnSol(routes, instance, options, Deadline.NONE);
+
+        Solution solution = new Solution(giantTour.toIds(), routes, NodeUtil.getRouteRes(NodeUtil.toRouteStates(routes, instance)));
+        offer(solution);
+        event.end();
+        if (event.shouldCommit()) {
+            event.set(instance, start, solution.getCost());
+            event.commit();
+        }
+        return solution;
+    }
+
+    /**
+     * Replaces the best solution if the candidate is better.
+     *
+     * @return true if the candidate became the best solution.
+     */
+    private boolean offer(Solution candidate) {
+        Solution current;
+        do {
+            current = best.get();
+            if (!candidate.isBetterThan(current)) {
+                return false;
+            }
+        } while (!best.compareAndSet(current, candidate));
+        SearchMetrics.recordBest(candidate.getCost());
+        SolverEvents.improvement(instance, "multi-start", candidate.getCost());
+        return true;
+    }
+
+    private long startSeed(int start) {
+        // SplitMix64 finaliser: decorrelates the seeds of consecutive starts
+        long z = seed + (start + 1) * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -1,10 +1,11 @@
 package tp.vrp;
 
+import tp.vrp.Data.DistanceMatrix;
+import tp.vrp.Data.Instance;
 import tp.vrp.Data.Node;
-import tp.vrp.Data.Request;
+import tp.vrp.Data.RouteState;
 
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 
 public class NodeUtil {
@@ -44,34 +45,31 @@ public class NodeUtil {
     }
 
     /**
-     * Calculates the total distance for a given route represented by node IDs.
+     * Calculates the total distance for a given route represented by node IDs,
+     * including the edge closing the cycle from the last node back to the first.
      *
      * @param nodeIds List of node IDs representing the route.
-     * @param allNodes List of all Node objects.
+     * @param distances Precomputed distance matrix of the instance.
      * @return The total distance of the route.
      */
-    public static double totalDistance(List<Integer> nodeIds, List<Node> allNodes) {
-        double totalDistance = 0.0;
-        for (int i = 0; i < nodeIds.size() - 1; i++) {
-            Node nodeA = findNodeById(nodeIds.get(i), allNodes);
-            Node nodeB = findNodeById(nodeIds.get(i + 1), allNodes);
-            if (nodeA != null && nodeB != null) {
-                totalDistance += Node.GetDistance(nodeA, nodeB);
-            }
-        }
-        totalDistance += Node.GetDistance(findNodeById(nodeIds.getFirst(), allNodes), findNodeById(nodeIds.getLast(), allNodes));
+    public static double totalDistance(List<Integer> nodeIds, DistanceMatrix distances) {
+        double totalDistance = totalDistance2(nodeIds, distances);
+        totalDistance += distances.distance(nodeIds.getFirst(), nodeIds.getLast());
 
         return totalDistance;
     }
 
-    public static double totalDistance2(List<Integer> nodeIds, List<Node> allNodes) {
+    /**
+     * Calculates the distance of a route represented by node IDs, without closing the cycle.
+     *
+     * @param nodeIds List of node IDs representing the route.
+     * @param distances Precomputed distance matrix of the instance.
+     * @return The distance of the route.
+     */
+    public static double totalDistance2(List<Integer> nodeIds, DistanceMatrix distances) {
         double totalDistance = 0.0;
         for (int i = 0; i < nodeIds.size() - 1; i++) {
-            Node nodeA = findNodeById(nodeIds.get(i), allNodes);
-            Node nodeB = findNodeById(nodeIds.get(i + 1), allNodes);
-            if (nodeA != null && nodeB != null) {
-                totalDistance += Node.GetDistance(nodeA, nodeB);
-            }
+            totalDistance += distances.distance(nodeIds.get(i), nodeIds.get(i + 1));
         }
         return totalDistance;
     }
@@ -80,20 +78,12 @@ public class NodeUtil {
      * Reorders the list of nodes so that the depot node is at the beginning.
      *
      * @param nodes The list of node IDs.
-     * @param allNodes The list of all nodes.
-     * @param depotTypeId The type ID of the depot node.
+     * @param depotId The ID of the depot node.
      * @return The reordered list of node IDs with the depot at the start.
      */
-    public static List<Integer> reorderListWithDepotFirst(List<Integer> nodes, List<Node> allNodes, int depotTypeId) {
-        int depotIndex = -1;
-        for (int i = 0; i < nodes.size(); i++) {
-            Node node = findNodeById(nodes.get(i), allNodes);
-            if (node != null && node.getType() == depotTypeId) {
-                depotIndex = i;
-                break;
-            }
-        }
-        List<Integer> res = new ArrayList<>();
+    public static List<Integer> reorderListWithDepotFirst(List<Integer> nodes, int depotId) {
+        int depotIndex = Math.max(nodes.indexOf(depotId), 0);
+        List<Integer> res = new ArrayList<>(nodes.size());
 
         for(int i =0; i<nodes.size(); i++)
         {
@@ -112,11 +102,11 @@ public class NodeUtil {
         return null; // or handle this case appropriately
     }
 
-    public static void printRouteResults(List<List<Integer>> solutions, List<Node> nodes) {
+    public static void printRouteResults(List<List<Integer>> solutions, DistanceMatrix distances) {
         double globalDistance = 0;
         for (int i = 0; i < solutions.size(); i++) {
             List<Integer> route = solutions.get(i);
-            double distance = NodeUtil.totalDistance2(route, nodes);
+            double distance = NodeUtil.totalDistance2(route, distances);
             System.out.println("Route " + (i + 1) + ": " + route.toString());
             System.out.println("Distance: " + distance);
             System.out.println(); // For better readability
@@ -125,38 +115,75 @@ public class NodeUtil {
         System.out.println("Global Route Distance : " + globalDistance);
     }
 
-    public static double getRouteRes(List<List<Integer>> solutions, List<Node> nodes) {
+    /**
+     * Computes the total distance of a solution, without printing anything: this is the objective
+     * of the solvers. {@link #printRouteResults} prints the routes, or use {@link ResultWriter}.
+     *
+     * @param solutions The routes, as lists of node IDs starting and ending at the depot.
+     * @param distances Precomputed distance matrix of the instance.
+     * @return The total distance of the routes.
+     */
+    public static double getRouteRes(List<List<Integer>> solutions, DistanceMatrix distances) {
         double globalDistance = 0;
-        for (int i = 0; i < solutions.size(); i++) {
-            List<Integer> route = solutions.get(i);
-            double distance = NodeUtil.totalDistance2(route, nodes);
-            System.out.println("Route " + (i + 1) + ": " + route.toString());
-            System.out.println("Distance: " + distance);
-            System.out.println(); // For better readability
-            globalDistance+=distance;
+        for (List<Integer> route : solutions) {
+            globalDistance += NodeUtil.totalDistance2(route, distances);
         }
-return globalDistance;
+        return globalDistance;
     }
 
-    public static double getResidualCapa(List<List<Integer>> solutions, List<Node> nodes, List<Request> requests, int VehiculeCapa )
-    {
-        double capaRes = 0;
-        for (int i = 0; i < solutions.size(); i++) {
-            double capa = 0;
-
-            List<Integer> route = solutions.get(i);
+    /**
+     * Same as {@link #getRouteRes(List, DistanceMatrix)}, reading each route distance from its state.
+     *
+     * @param routes The route states of the solution.
+     * @return The total distance of the routes.
+     */
+    public static double getRouteRes(List<RouteState> routes) {
+        double globalDistance = 0;
+        for (RouteState route : routes) {
+            globalDistance += route.distance();
+        }
+        return globalDistance;
+    }
 
-            for (int y = 1; y<route.size()-1; y++)
-            {
-                int finalY = y;
-                capa += requests.stream().filter(request -> request.getNode() == route.get(finalY)).findFirst().get().getQuantity();
-            }
+    /**
+     * Builds the state (prefix loads and distances) of every route of a solution.
+     *
+     * @param solutions The routes, as lists of node IDs starting and ending at the depot.
+     * @param instance The instance the routes belong to.
+     * @return One route state per route, in the same order.
+     */
+    public static List<RouteState> toRouteStates(List<List<Integer>> solutions, Instance instance) {
+        List<RouteState> states = new ArrayList<>(solutions.size());
+        for (List<Integer> route : solutions) {
+            states.add(new RouteState(instance, route));
+        }
+        return states;
+    }
 
-            capaRes = VehiculeCapa - capa;
+    /**
+     * Computes the total residual capacity over all routes of a solution.
+     *
+     * @param solutions The routes, as lists of node IDs starting and ending at the depot.
+     * @param instance The instance providing demands and vehicle capacity.
+     * @return The sum over routes of the capacity left unused.
+     */
+    public static double getResidualCapa(List<List<Integer>> solutions, Instance instance)
+    {
+        return getResidualCapa(toRouteStates(solutions, instance));
+    }
 
+    /**
+     * Computes the total residual capacity over the given route states.
+     *
+     * @param routes The route states of the solution.
+     * @return The sum over routes of the capacity left unused.
+     */
+    public static double getResidualCapa(List<RouteState> routes) {
+        double capaRes = 0;
+        for (RouteState route : routes) {
+            capaRes += route.residualCapacity();
         }
         return capaRes;
-
     }
 
 
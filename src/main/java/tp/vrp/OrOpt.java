@@ -0,0 +1,225 @@
+package tp.vrp;
+
+import tp.vrp.Data.DistanceMatrix;
+import tp.vrp.Data.NeighborLists;
+
+/**
+ * In-place Or-opt local search on a closed tour: a segment of 1 to {@link #MAX_SEGMENT}
+ * consecutive nodes is moved elsewhere in the tour, possibly reversed.
+ * <p>
+ * Like the neighbour-list {@link TwoOpt}, moves are restricted to those creating an edge between
+ * an end of the segment and one of its nearest neighbours, and don't-look bits make only the
+ * nodes whose surroundings changed be examined again. Each move is evaluated in O(1) from the
+ * three edges it removes and the three it adds, then applied as two or three 2-opt exchanges.
+ * <p>
+ * When combined with 2-opt moves in the same loop, the search explores the restricted 3-opt
+ * neighbourhood made of 2-opt and segment insertion moves (often called Or-3opt), which reaches
+ * better local optima than 2-opt alone for little more work.
+ */
+public final class OrOpt {
+
+    /** Maximum number of nodes of a moved segment. */
+    public static final int MAX_SEGMENT = 3;
+
+    private final Tour owner;
+    private final int[] tour;
+    private final int[] pos;
+    // Set by each descent
+    private int size;
+    private DistanceMatrix distances;
+    private NeighborLists neighbors;
+
+    // FIFO of nodes whose don't-look bit is off, and endpoints of 2-opt moves, borrowed from the tour
+    private final int[] queue;
+    private final boolean[] queued;
+    private final int[] ends;
+    private int head;
+    private int count;
+
+    private OrOpt(Tour tour) {
+        this.owner = tour;
+        this.tour = tour.nodes();
+        this.pos = tour.positions();
+        this.queue = tour.scratch;
+        this.queued = tour.marks;
+        this.ends = tour.ends;
+    }
+
+    /**
+     * Applies Or-opt moves, and 2-opt moves if requested, until no active node remains.
+     * The tour may hold only a subset of the instance nodes; neighbours outside the tour are ignored.
+     * The search state lives on the tour and is reused by the next calls, so that no memory is allocated.
+     *
+     * @param tour        The tour, modified in place; its first node stays at position 0.
+     * @param distances   The distance matrix of the instance.
+     * @param neighbors   The candidate lists of the instance.
+     * @param withTwoOpt  Whether 2-opt moves are tried before the segment moves of each node.
+     * @param active      The nodes to examine first, or {@code null} to examine every node of the tour.
+     * @param activeCount The number of valid entries in {@code active}.
+     * @return The total length removed from the tour.
+     */
+    public static double optimize(Tour tour, DistanceMatrix distances, NeighborLists neighbors, boolean withTwoOpt,
+                                  int[] active, int activeCount) {
+        if (tour.size() < 4) {
+            return 0;
+        }
+        if (tour.orOpt == null) {
+            tour.orOpt = new OrOpt(tour);
+        }
+        return tour.orOpt.run(distances, neighbors, withTwoOpt, active, activeCount);
+    }
+
+    private double run(DistanceMatrix distances, NeighborLists neighbors, boolean withTwoOpt, int[] active, int activeCount) {
+        this.size = owner.size();
+        this.distances = distances;
+        this.neighbors = neighbors;
+        head = 0;
+        count = 0;
+        if (active == null) {
+            for (int p = 0; p < size; p++) {
+                enqueue(tour[p]);
+            }
+        } else {
+            for (int q = 0; q < activeCount; q++) {
+                if (pos[active[q]] >= 0) {
+                    enqueue(active[q]);
+                }
+            }
+        }
+
+        int first = tour[0];
+        double totalGain = 0;
+        while (count > 0) {
+            int a = queue[head];
+            head = head + 1 == queue.length ? 0 : head + 1;
+            count--;
+            queued[a] = false;
+
+            double delta = withTwoOpt ? TwoOpt.improve(tour, pos, size, distances, neighbors, a, ends) : 0;
+            if (delta < 0) {
+                for (int node : ends) {
+                    enqueue(node);
+                }
+            } else {
+                delta = moveSegment(a);
+            }
+            totalGain -= delta;
+        }
+
+        TwoOpt.rotateToFront(tour, pos, size, first, queue);
+        return totalGain;
+    }
+
+    /**
+     * Applies the first improving move of a segment starting at node a and extending forward or
+     * backward, such that a becomes adjacent to one of its nearest neighbours.
+     *
+     * @return The (negative) length change of the applied move, or 0 if no improving move was found.
+     */
+    private double moveSegment(int a) {
+        int k = neighbors.getK();
+        for (int direction = 0; direction < 2; direction++) {
+            boolean forward = direction == 0;
+            // In the chosen direction: p a ... s2 n
+            int p = step(a, !forward);
+            double pa = d(p, a);
+            int s2 = a;
+            for (int length = 1; length <= MAX_SEGMENT && length + 3 <= size; length++) {
+                if (length > 1) {
+                    s2 = step(s2, forward);
+                }
+                int n = step(s2, forward);
+                double removal = pa + d(s2, n) - d(p, n);
+                if (removal <= TwoOpt.EPSILON) {
+                    continue;
+                }
+
+                for (int r = 0; r < k; r++) {
+                    int c = neighbors.get(a, r);
+                    if (pos[c] < 0) {
+                        continue;
+                    }
+                    double ac = d(a, c);
+                    if (ac >= pa) {
+                        break; // Neighbours are sorted: the new edge at a cannot be shorter any more
+                    }
+                    if (inSegment(c, a, length, forward)) {
+                        continue;
+                    }
+                    // c a ... s2 e
+                    int e = step(c, forward);
+                    if (!inSegment(e, a, length, forward)) {
+                        double delta = ac + d(s2, e) - d(c, e) - removal;
+                        if (delta < -TwoOpt.EPSILON) {
+                            insert(a, s2, p, n, c, e, false);
+                            return delta;
+                        }
+                    }
+                    // e s2 ... a c
+                    e = step(c, !forward);
+                    if (!inSegment(e, a, length, forward)) {
+                        double delta = ac + d(e, s2) - d(e, c) - removal;
+                        if (delta < -TwoOpt.EPSILON) {
+                            insert(a, s2, p, n, e, c, true);
+                            return delta;
+                        }
+                    }
+                }
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Moves the segment s1 ... s2, which lies between p and n, between the adjacent nodes x and y,
+     * where s1 follows p and y follows x in the same direction: p s1 ... s2 n ... x y becomes
+     * p n ... x s1 ... s2 y, or p n ... x s2 ... s1 y if reversed.
+     */
+    private void insert(int s1, int s2, int p, int n, int x, int y, boolean reversed) {
+        if (y == p) {
+            // Read the tour the other way round: then x follows the segment's new neighbour p
+            insert(s2, s1, n, p, y, x, reversed);
+            return;
+        }
+        // p s1 ... s2 n ... x y  ->  p x ... n s2 ... s1 y
+        TwoOpt.exchange(tour, pos, size, p, s1, x);
+        if (x != n) {
+            // ->  p n ... x s2 ... s1 y
+            TwoOpt.exchange(tour, pos, size, p, x, n);
+        }
+        if (!reversed && s1 != s2) {
+            // ->  p n ... x s1 ... s2 y
+            TwoOpt.exchange(tour, pos, size, x, s2, s1);
+        }
+        enqueue(p);
+        enqueue(n);
+        enqueue(s1);
+        enqueue(s2);
+        enqueue(x);
+        enqueue(y);
+    }
+
+    /**
+     * @return Whether a node is one of the {@code length} nodes starting at s1 in the given direction.
+     */
+    private boolean inSegment(int node, int s1, int length, boolean forward) {
+        int offset = forward ? pos[node] - pos[s1] : pos[s1] - pos[node];
+        if (offset < 0) {
+            offset += size;
+        }
+        return offset < length;
+    }
+
+    private int step(int node, boolean forward) {
+        int p = pos[node];
+        return tour[forward ? TwoOpt.next(p, size) : TwoOpt.previous(p, size)];
+    }
+
+    private double d(int a, int b) {
+        return distances.get(a, b);
+    }
+
+    private void enqueue(int node) {
+        count = TwoOpt.enqueue(queue, queued, head, count, node);
+    }
+}
@@ -0,0 +1,130 @@
+package tp.vrp;
+
+import tp.vrp.Data.Instance;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Parallel version of {@link RouteOptimizationAlgorithms#grasp}. Workers take iteration numbers from a
+ * shared counter, run greedy randomized construction followed by the local search of the
+ * {@link SearchOptions}, and publish their local optima to a shared {@link ElitePool}. The stop
+ * on {@code maxIterWithoutImprovement} compares the global iteration counter with the last
+ * iteration that improved the pool's best tour.
+ */
+public class ParallelGrasp {
+
+    private final Instance instance;
+    private final int threads;
+    private final long seed;
+    private double alpha = 0.2;
+    private SearchOptions options = SearchOptions.DEFAULT;
+
+    /**
+     * @param instance The instance to solve.
+     * @param threads  The number of worker threads.
+     * @param seed     The seed from which the generator of each worker is derived.
+     */
+    public ParallelGrasp(Instance instance, int threads, long seed) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("The number of threads must be positive: " + threads);
+        }
+        this.instance = instance;
+        this.threads = threads;
+        this.seed = seed;
+    }
+
+    /**
+     * @param alpha Parameter controlling the greediness and randomness of the construction.
+     */
+    public void setAlpha(double alpha) {
+        this.alpha = alpha;
+    }
+
+    /**
+     * Sets the local search applied to each constructed tour.
+     */
+    public void setSearchOptions(SearchOptions options) {
+        if (options == null) {
+            throw new IllegalArgumentException("The search options must not be null");
+        }
+        this.options = options;
+    }
+
+    /**
+     * Runs GRASP iterations on all workers until the budget is spent or the search stagnates.
+     *
+     * @param maxIterations             The total number of iterations shared by the workers.
+     * @param maxIterWithoutImprovement The number of iterations without improvement of the best tour before stopping.
+     * @param elite                     The pool receiving the local optima.
+     * @return The best route found.
+     */
+    public List<Integer> run(int maxIterations, int maxIterWithoutImprovement, ElitePool elite) {
+        return run(maxIterations, maxIterWithoutImprovement, elite, Deadline.NONE);
+    }
+
+    /**
+     * Runs GRASP iterations on all workers until the budget is spent, the search stagnates or the
+     * deadline passes; iterations already started when it passes are completed.
+     *
+     * @param maxIterations             The total number of iterations shared by the workers.
+     * @param maxIterWithoutImprovement The number of iterations without improvement of the best tour before stopping.
+     * @param elite                     The pool receiving the local optima.
+     * @param deadline                  The time after which no new iteration starts.
+     * @return The best route found, or null if no iteration was completed.
+     */
+    public List<Integer> run(int maxIterations, int maxIterWithoutImprovement, ElitePool elite, Deadline deadline) {
+        AtomicInteger nextIteration = new AtomicInteger();
+        AtomicInteger lastImprovementIteration = new AtomicInteger();
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>(threads);
+            for (int w = 0; w < threads; w++) {
+                Random random = new Random(seed + w * 0x9E3779B97F4A7C15L);
+                futures.add(executor.submit(() -> work(random, nextIteration, lastImprovementIteration,
+                        maxIterations, maxIterWithoutImprovement, elite, deadline)));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("GRASP interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("A GRASP worker failed", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+        return elite.getBest();
+    }
+
+    private void work(Random random, AtomicInteger nextIteration, AtomicInteger lastImprovementIteration,
+                      int maxIterations, int maxIterWithoutImprovement, ElitePool elite, Deadline deadline) {
+        Tour localOptimum = new Tour(instance);
+        while (true) {
+            if (deadline.expired()) {
+                return;
+            }
+            int i = nextIteration.getAndIncrement();
+            if (i >= maxIterations || i - lastImprovementIteration.get() >= maxIterWithoutImprovement) {
+                return;
+            }
+
+            RouteOptimizationAlgorithms.greedyRandomizedConstruction(localOptimum, alpha, random);
+            RouteOptimizationAlgorithms.applyLocalSearch(localOptimum, options, null, 0);
+            double localOptimumCost = localOptimum.length(instance.getDistances());
+
+            // The tour is only converted to a list when it can enter the pool
+            if (elite.admits(localOptimumCost) && elite.offer(localOptimum.toIds(), localOptimumCost)) {
+                lastImprovementIteration.accumulateAndGet(i, Math::max);
+            }
+        }
+    }
+}
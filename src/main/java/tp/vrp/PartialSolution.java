@@ -0,0 +1,319 @@
+package tp.vrp;
+
+import tp.vrp.Data.DistanceMatrix;
+import tp.vrp.Data.Instance;
+import tp.vrp.Data.RouteState;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Multi-route solution from which customers can be removed and into which they can be inserted
+ * again, as used by the destroy and repair operators of {@link AdaptiveLargeNeighborhoodSearch}.
+ * <p>
+ * Each route is a {@link RouteState}, so loads and insertion checks are O(1), and removing or
+ * inserting a customer only rewrites the tail of its route. The route and position of every
+ * customer are indexed. Route objects are reused by {@link #copyFrom}, so copying a solution
+ * does not allocate once the solutions have reached their size. Not thread-safe.
+ */
+public final class PartialSolution {
+
+    private final Instance instance;
+    private final DistanceMatrix distances;
+    private final int depot;
+
+    private final List<RouteState> routes = new ArrayList<>();
+    private int routeCount;
+    // Route and position of every customer; -1 for removed customers and the depot
+    private final int[] routeOf;
+    private final int[] positionOf;
+    // Removed customers, and the index of each one in that list
+    private final int[] removed;
+    private final int[] removedIndex;
+    private int removedCount;
+
+    private final int[] buffer;
+    private final int[] tailBuffer;
+
+    /**
+     * Creates a solution without routes.
+     *
+     * @param instance The instance the solution belongs to.
+     */
+    public PartialSolution(Instance instance) {
+        this.instance = instance;
+        this.distances = instance.getDistances();
+        this.depot = instance.getDepotIndex();
+        int n = instance.size();
+        this.routeOf = new int[n];
+        this.positionOf = new int[n];
+        this.removed = new int[n];
+        this.removedIndex = new int[n];
+        this.buffer = new int[n + 1];
+        this.tailBuffer = new int[n + 1];
+        Arrays.fill(routeOf, -1);
+        Arrays.fill(positionOf, -1);
+    }
+
+    /**
+     * Replaces the routes of this solution; no customer is removed afterwards.
+     *
+     * @param solution The routes, as lists of node IDs starting and ending at the depot.
+     */
+    public void load(List<List<Integer>> solution) {
+        routeCount = 0;
+        removedCount = 0;
+        Arrays.fill(routeOf, -1);
+        Arrays.fill(positionOf, -1);
+        for (List<Integer> ids : solution) {
+            RouteState route = nextRoute();
+            int count = 0;
+            for (int id : ids) {
+                int node = instance.getIndexOf(id);
+                if (node != depot) {
+                    buffer[count++] = node;
+                }
+            }
+            route.setTail(1, buffer, count);
+            if (count == 0) {
+                routeCount--;
+            } else {
+                index(routeCount - 1, 1);
+            }
+        }
+    }
+
+    /**
+     * Makes this solution a copy of another solution of the same instance.
+     */
+    public void copyFrom(PartialSolution other) {
+        routeCount = 0;
+        for (int r = 0; r < other.routeCount; r++) {
+            nextRoute().copyFrom(other.routes.get(r));
+        }
+        System.arraycopy(other.routeOf, 0, routeOf, 0, routeOf.length);
+        System.arraycopy(other.positionOf, 0, positionOf, 0, positionOf.length);
+        System.arraycopy(other.removed, 0, removed, 0, other.removedCount);
+        System.arraycopy(other.removedIndex, 0, removedIndex, 0, removedIndex.length);
+        removedCount = other.removedCount;
+    }
+
+    /**
+     * Appends an empty route, reusing a previously allocated route object if possible.
+     */
+    private RouteState nextRoute() {
+        if (routeCount == routes.size()) {
+            routes.add(new RouteState(instance));
+        }
+        RouteState route = routes.get(routeCount++);
+        route.setTail(1, buffer, 0);
+        return route;
+    }
+
+    public Instance getInstance() {
+        return instance;
+    }
+
+    public int routeCount() {
+        return routeCount;
+    }
+
+    /**
+     * @param r A route number, between 0 and {@link #routeCount()} - 1.
+     * @return The state of the route; it must not be modified directly.
+     */
+    public RouteState route(int r) {
+        return routes.get(r);
+    }
+
+    /**
+     * @return The route number of a customer, or -1 if it is removed.
+     */
+    public int routeOf(int customer) {
+        return routeOf[customer];
+    }
+
+    /**
+     * @return The position of a customer in its route, or -1 if it is removed.
+     */
+    public int positionOf(int customer) {
+        return positionOf[customer];
+    }
+
+    public int removedCount() {
+        return removedCount;
+    }
+
+    /**
+     * @param i An index between 0 and {@link #removedCount()} - 1.
+     * @return The i-th removed customer.
+     */
+    public int removed(int i) {
+        return removed[i];
+    }
+
+    /**
+     * @return The total distance of the routes.
+     */
+    public double cost() {
+        double cost = 0;
+        for (int r = 0; r < routeCount; r++) {
+            cost += routes.get(r).distance();
+        }
+        return cost;
+    }
+
+    /**
+     * @return The length saved by removing a routed customer from its route.
+     */
+    public double removalGain(int customer) {
+        RouteState route = routes.get(routeOf[customer]);
+        int p = positionOf[customer];
+        int previous = route.get(p - 1);
+        int next = route.get(p + 1);
+        return distances.get(previous, customer) + distances.get(customer, next) - distances.get(previous, next);
+    }
+
+    /**
+     * Removes a routed customer from its route. Its route stays in place, even if it becomes empty.
+     */
+    public void remove(int customer) {
+        int r = routeOf[customer];
+        int p = positionOf[customer];
+        if (r < 0) {
+            throw new IllegalArgumentException("Customer " + customer + " is not routed");
+        }
+        RouteState route = routes.get(r);
+        int count = 0;
+        for (int q = p + 1; q <= route.length(); q++) {
+            buffer[count++] = route.get(q);
+        }
+        route.setTail(p, buffer, count);
+        index(r, p);
+
+        routeOf[customer] = -1;
+        positionOf[customer] = -1;
+        removedIndex[customer] = removedCount;
+        removed[removedCount++] = customer;
+    }
+
+    /**
+     * Computes the length added by inserting a customer into a route, before a given position.
+     *
+     * @param customer A removed customer.
+     * @param r        A route number.
+     * @param p        The position the customer would take, between 1 and the route length + 1.
+     * @return The added length.
+     */
+    public double insertionCost(int customer, int r, int p) {
+        RouteState route = routes.get(r);
+        int previous = route.get(p - 1);
+        int next = route.get(p);
+        return distances.get(previous, customer) + distances.get(customer, next) - distances.get(previous, next);
+    }
+
+    /**
+     * @return Whether the vehicle of route r can also serve the customer.
+     */
+    public boolean fits(int customer, int r) {
+        return routes.get(r).load() + instance.getDemand(customer) <= instance.getCapacity() + 1e-9;
+    }
+
+    /**
+     * Inserts a removed customer into a route, before a given position.
+     *
+     * @param customer A removed customer.
+     * @param r        A route number, or {@link #routeCount()} to open a new route.
+     * @param p        The position the customer takes, between 1 and the route length + 1.
+     */
+    public void insert(int customer, int r, int p) {
+        if (routeOf[customer] >= 0) {
+            throw new IllegalArgumentException("Customer " + customer + " is already routed");
+        }
+        if (r == routeCount) {
+            nextRoute();
+        }
+        RouteState route = routes.get(r);
+        buffer[0] = customer;
+        int count = 1;
+        for (int q = p; q <= route.length(); q++) {
+            buffer[count++] = route.get(q);
+        }
+        route.setTail(p, buffer, count);
+        index(r, p);
+
+        int last = removed[--removedCount];
+        int i = removedIndex[customer];
+        removed[i] = last;
+        removedIndex[last] = i;
+    }
+
+    /**
+     * Exchanges the ends of two distinct routes (2-opt* move): route a becomes its positions 1 to
+     * i followed by the positions j to the end of route b, and route b becomes its positions 1 to
+     * j - 1 followed by the positions i + 1 to the end of route a.
+     */
+    public void exchangeTails(int a, int i, int b, int j) {
+        if (a == b) {
+            throw new IllegalArgumentException("Cannot exchange the tails of route " + a + " with itself");
+        }
+        RouteState first = routes.get(a);
+        RouteState second = routes.get(b);
+        int countA = 0;
+        for (int q = i + 1; q <= first.length(); q++) {
+            tailBuffer[countA++] = first.get(q);
+        }
+        int countB = 0;
+        for (int q = j; q <= second.length(); q++) {
+            buffer[countB++] = second.get(q);
+        }
+        first.setTail(i + 1, buffer, countB);
+        second.setTail(j, tailBuffer, countA);
+        index(a, i + 1);
+        index(b, j);
+    }
+
+    /**
+     * Drops the routes left empty by removals; the other routes may be renumbered.
+     */
+    public void dropEmptyRoutes() {
+        int r = 0;
+        while (r < routeCount) {
+            if (routes.get(r).length() > 0) {
+                r++;
+                continue;
+            }
+            int last = --routeCount;
+            if (r != last) {
+                // Keep the emptied route object for later reuse
+                RouteState empty = routes.get(r);
+                routes.set(r, routes.get(last));
+                routes.set(last, empty);
+                index(r, 1);
+            }
+        }
+    }
+
+    /**
+     * @return The routes, as lists of node IDs starting and ending at the depot.
+     */
+    public List<List<Integer>> toRoutes() {
+        List<List<Integer>> solution = new ArrayList<>(routeCount);
+        for (int r = 0; r < routeCount; r++) {
+            solution.add(routes.get(r).toIds());
+        }
+        return solution;
+    }
+
+    /**
+     * Records the route and position of the customers of route r from position {@code from} on.
+     */
+    private void index(int r, int from) {
+        RouteState route = routes.get(r);
+        for (int p = from; p <= route.length(); p++) {
+            routeOf[route.get(p)] = r;
+            positionOf[route.get(p)] = p;
+        }
+    }
+}
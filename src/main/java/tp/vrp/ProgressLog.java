@@ -0,0 +1,50 @@
+package tp.vrp;
+
+import java.time.Duration;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Rate-limited progress messages of a search loop, sent to a {@link java.util.logging} logger.
+ * <p>
+ * Callers test {@link #isDue()} before building the message, so iterations that do not log cost
+ * one clock read, and none at all when the level is disabled. Progress is logged at
+ * {@link Level#INFO} at most once per interval (one second by default, or the
+ * {@code tp.vrp.progressInterval} system property, in milliseconds); set the logger level to
+ * {@link Level#WARNING} to silence it, or the interval to 0 to log every iteration. One instance
+ * follows one loop and is not thread-safe.
+ */
+final class ProgressLog {
+
+    private static final long INTERVAL_NANOS = Duration.ofMillis(Long.getLong("tp.vrp.progressInterval", 1000)).toNanos();
+
+    private final Logger logger;
+    private long next;
+
+    ProgressLog(Logger logger) {
+        this.logger = logger;
+        this.next = System.nanoTime();
+    }
+
+    /**
+     * @return Whether a progress message should be logged now; if so, the next one is due after the interval.
+     */
+    boolean isDue() {
+        if (!logger.isLoggable(Level.INFO)) {
+            return false;
+        }
+        long now = System.nanoTime();
+        if (now - next < 0) {
+            return false;
+        }
+        next = now + INTERVAL_NANOS;
+        return true;
+    }
+
+    /**
+     * Logs a progress message; only call it when {@link #isDue()} returned true.
+     */
+    void log(String format, Object... args) {
+        logger.logp(Level.INFO, logger.getName(), null, String.format(format, args));
+    }
+}
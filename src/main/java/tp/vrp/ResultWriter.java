@@ -0,0 +1,163 @@
+package tp.vrp;
+
+import tp.vrp.Data.Instance;
+import tp.vrp.Data.RouteState;
+import tp.vrp.Data.Solution;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Writes a solution with the content of the {@code JDD*_RESULTS.txt} files: every route with its
+ * distance, the global distance, the execution time and the residual capacity.
+ * <p>
+ * Three formats are available:
+ * <ul>
+ *     <li>{@link Format#TXT}: the layout of the results files;</li>
+ *     <li>{@link Format#CSV}: one row per route ({@code route,distance,load,residual_capacity,nodes},
+ *     the nodes separated by spaces), then a {@code total} row;</li>
+ *     <li>{@link Format#JSON}: one object with the totals and an array of routes.</li>
+ * </ul>
+ * The whole output goes through one buffer, and nothing is printed to the console.
+ */
+public class ResultWriter {
+
+    /**
+     * Output format.
+     */
+    public enum Format {
+        TXT, CSV, JSON;
+
+        /**
+         * @return The format matching the extension of a file name ({@code .csv}, {@code .json}), TXT otherwise.
+         */
+        public static Format fromFileName(String fileName) {
+            String lower = fileName.toLowerCase(Locale.ROOT);
+            if (lower.endsWith(".csv")) {
+                return CSV;
+            }
+            if (lower.endsWith(".json")) {
+                return JSON;
+            }
+            return TXT;
+        }
+    }
+
+    private final Instance instance;
+
+    /**
+     * @param instance The instance the written solutions belong to.
+     */
+    public ResultWriter(Instance instance) {
+        this.instance = instance;
+    }
+
+    /**
+     * Writes a solution to a file, in the format given by its extension.
+     *
+     * @param solution    The solution.
+     * @param elapsedTime The execution time reported with the solution.
+     * @param file        The file, created or replaced.
+     */
+    public void write(Solution solution, Duration elapsedTime, Path file) throws IOException {
+        try (BufferedWriter out = Files.newBufferedWriter(file)) {
+            write(solution, elapsedTime, Format.fromFileName(file.getFileName().toString()), out);
+        }
+    }
+
+    /**
+     * Writes a solution to a writer, which is flushed but not closed.
+     *
+     * @param solution    The solution.
+     * @param elapsedTime The execution time reported with the solution.
+     * @param format      The output format.
+     * @param out         The destination; it is wrapped in a buffer unless it already is one.
+     */
+    public void write(Solution solution, Duration elapsedTime, Format format, Writer out) throws IOException {
+        BufferedWriter buffer = out instanceof BufferedWriter ? (BufferedWriter) out : new BufferedWriter(out);
+        List<List<Integer>> routes = solution.getRoutes();
+        List<RouteState> states = NodeUtil.toRouteStates(routes, instance);
+        switch (format) {
+            case TXT:
+                writeText(routes, states, elapsedTime, buffer);
+                break;
+            case CSV:
+                writeCsv(routes, states, buffer);
+                break;
+            case JSON:
+                writeJson(routes, states, elapsedTime, buffer);
+                break;
+        }
+        buffer.flush();
+    }
+
+    private void writeText(List<List<Integer>> routes, List<RouteState> states, Duration elapsedTime, Writer out) throws IOException {
+        for (int r = 0; r < routes.size(); r++) {
+            out.write("Route " + (r + 1) + ": " + routes.get(r) + "\n");
+            out.write("Distance: " + states.get(r).distance() + "\n");
+            out.write("\n");
+        }
+        out.write("Global Route Distance : " + NodeUtil.getRouteRes(states) + "\n");
+        out.write("Execution Time: " + elapsedTime.getSeconds() + " seconds\n");
+        double residual = NodeUtil.getResidualCapa(states);
+        out.write("Total res capa = : " + residual + " moyenne " + residual / routes.size() + "\n");
+    }
+
+    private void writeCsv(List<List<Integer>> routes, List<RouteState> states, Writer out) throws IOException {
+        out.write("route,distance,load,residual_capacity,nodes\n");
+        double load = 0;
+        for (int r = 0; r < routes.size(); r++) {
+            RouteState state = states.get(r);
+            out.write((r + 1) + "," + state.distance() + "," + state.load() + "," + state.residualCapacity() + ",");
+            List<Integer> route = routes.get(r);
+            for (int p = 0; p < route.size(); p++) {
+                if (p > 0) {
+                    out.write(' ');
+                }
+                out.write(Integer.toString(route.get(p)));
+            }
+            out.write('\n');
+            load += state.load();
+        }
+        out.write("total," + NodeUtil.getRouteRes(states) + "," + load + "," + NodeUtil.getResidualCapa(states) + ",\n");
+    }
+
+    private void writeJson(List<List<Integer>> routes, List<RouteState> states, Duration elapsedTime, Writer out) throws IOException {
+        double residual = NodeUtil.getResidualCapa(states);
+        out.write("{\n");
+        out.write("  \"instance\": " + (instance.getName() == null ? "null" : "\"" + escape(instance.getName()) + "\"") + ",\n");
+        out.write("  \"distance\": " + NodeUtil.getRouteRes(states) + ",\n");
+        out.write("  \"executionTimeSeconds\": " + elapsedTime.toMillis() / 1000.0 + ",\n");
+        out.write("  \"residualCapacity\": " + residual + ",\n");
+        out.write("  \"averageResidualCapacity\": " + (routes.isEmpty() ? 0 : residual / routes.size()) + ",\n");
+        out.write("  \"routes\": [");
+        for (int r = 0; r < routes.size(); r++) {
+            RouteState state = states.get(r);
+            out.write(r == 0 ? "\n" : ",\n");
+            out.write("    {\"route\": " + (r + 1) + ", \"distance\": " + state.distance() + ", \"load\": " + state.load()
+                    + ", \"nodes\": " + routes.get(r) + "}");
+        }
+        out.write("\n  ]\n}\n");
+    }
+
+    private static String escape(String text) {
+        StringBuilder escaped = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '"' || c == '\\') {
+                escaped.append('\\').append(c);
+            } else if (c < 0x20) {
+                escaped.append(String.format("\\u%04x", (int) c));
+            } else {
+                escaped.append(c);
+            }
+        }
+        return escaped.toString();
+    }
+}
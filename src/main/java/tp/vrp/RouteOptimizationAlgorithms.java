@@ -1,147 +1,306 @@
 package tp.vrp;
 
 
-import tp.vrp.Data.Node;
-import tp.vrp.NodeUtil;
+import tp.vrp.Data.DistanceMatrix;
+import tp.vrp.Data.Instance;
+import tp.vrp.Data.SpatialGrid;
 
 import java.util.*;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 public class RouteOptimizationAlgorithms {
 
+    private static final Logger LOGGER = Logger.getLogger(RouteOptimizationAlgorithms.class.getName());
+
+    /**
+     * Local search applied to the giant tour by the iterated local search and the GRASP, and to
+     * each route after the split.
+     */
+    public enum LocalSearch {
+        /** 2-opt moves only. */
+        TWO_OPT,
+        /** 2-opt until a local optimum, then Or-opt segment moves. */
+        OR_OPT,
+        /** 2-opt and Or-opt moves in a single loop: restricted 3-opt. */
+        OR_3OPT,
+        /** Lin-Kernighan style variable-depth moves. */
+        LIN_KERNIGHAN
+    }
+
+    /**
+     * Number of nodes from which the GRASP construction queries a spatial grid instead of
+     * scanning every remaining candidate.
+     */
+    static final int SPATIAL_CONSTRUCTION_SIZE = 512;
+
+    /**
+     * Maximum number of triple shifts applied by one perturbation of the iterated local search.
+     */
+    static final int MAX_PERTURBATION_STRENGTH = 3;
+
     /**
      * Applies the 2-opt algorithm to improve an existing route.
+     * The route is treated as a closed tour and its first node stays in place.
      *
      * @param route The initial route.
-     * @param nodes The list of all nodes.
+     * @param instance The instance the route belongs to.
      * @return An improved route.
      */
-    private static List<Integer> applyTwoOpt(List<Integer> route, List<Node> nodes) {
-        boolean improvement = true;
-        while (improvement) {
-
-            improvement = false;
-            for (int i = 0; i < route.size() - 1; i++) {
-                for (int k = i + 1; k < route.size(); k++) {
+    static List<Integer> applyTwoOpt(List<Integer> route, Instance instance) {
+        Tour tour = Tour.fromIds(route, instance);
+        applyTwoOpt(tour, SearchOptions.DEFAULT, null, 0);
+        return tour.toIds();
+    }
 
-                    List<Integer> newRoute = twoOptSwap(route, i, k);
-                    if (NodeUtil.totalDistance(newRoute, nodes) <
-                            NodeUtil.totalDistance(route, nodes)) {
-                        route = newRoute;
-                        improvement = true;
-                    }
-                }
-            }
+    /**
+     * Applies the 2-opt algorithm to a tour in place; its first node stays in place.
+     * Short tours are searched exhaustively. Longer tours use the candidate lists and
+     * only wake up the given nodes.
+     *
+     * @param tour The tour to improve.
+     * @param options The options giving the number of candidate neighbours.
+     * @param touched The nodes whose surroundings changed, or {@code null} to examine every node.
+     * @param touchedCount The number of valid entries in {@code touched}.
+     */
+    static void applyTwoOpt(Tour tour, SearchOptions options, int[] touched, int touchedCount) {
+        Instance instance = tour.getInstance();
+        int neighborListSize = options.getNeighborListSize();
+        if (tour.size() <= 4 * neighborListSize) {
+            TwoOpt.optimize(tour, instance.getDistances(), TwoOpt.Strategy.FIRST_IMPROVEMENT);
+        } else {
+            TwoOpt.optimize(tour, instance.getDistances(), instance.getNeighbors(neighborListSize), touched, touchedCount);
         }
-        return route;
     }
 
-
     /**
-     * Performs a 2-opt swap by reversing the order of nodes between indices i and k.
+     * Applies the local search of the options to a tour in place; its first
+     * node stays in place. Or-opt and Lin-Kernighan moves always use the candidate lists; short
+     * tours, whose nodes have most of their neighbours outside the tour, are made 2-optimal first
+     * for the latter.
      *
-     * @param route The route to apply the swap to.
-     * @param i     The start index of the segment to reverse.
-     * @param k     The end index of the segment to reverse.
-     * @return A new route with the segment reversed.
+     * @param tour The tour to improve.
+     * @param options The local search and its number of candidate neighbours.
+     * @param touched The nodes whose surroundings changed, or {@code null} to examine every node.
+     * @param touchedCount The number of valid entries in {@code touched}.
      */
-    private static List<Integer> twoOptSwap(List<Integer> route, int i, int k) {
-        List<Integer> newRoute = new ArrayList<>();
-        // 1. Take route[0] to route[i-1] and add them in order to newRoute
-        for (int c = 0; c <= i - 1; c++) {
-            newRoute.add(route.get(c));
+    static void applyLocalSearch(Tour tour, SearchOptions options, int[] touched, int touchedCount) {
+        DistanceMatrix distances = tour.getInstance().getDistances();
+        SolverEvents.LocalSearch event = new SolverEvents.LocalSearch();
+        double initialCost = event.isEnabled() ? tour.length(distances) : 0;
+        event.begin();
+        long start = SearchMetrics.start();
+        runLocalSearch(tour, options, touched, touchedCount);
+        SearchMetrics.stop(SearchMetrics.Phase.LOCAL_SEARCH, start);
+        event.end();
+        if (event.shouldCommit()) {
+            event.set(tour.getInstance(), options.getLocalSearch().name(), tour.size(), initialCost, tour.length(distances));
+            event.commit();
         }
+    }
 
-        // 2. Take route[i] to route[k] and add them in reverse order to newRoute
-        for (int c = k; c >= i; c--) {
-            newRoute.add(route.get(c));
+    /**
+     * Same as {@link #applyLocalSearch}, without timing, for the routes of a solution.
+     */
+    private static void runLocalSearch(Tour tour, SearchOptions options, int[] touched, int touchedCount) {
+        Instance instance = tour.getInstance();
+        int neighborListSize = options.getNeighborListSize();
+        switch (options.getLocalSearch()) {
+            case TWO_OPT:
+                applyTwoOpt(tour, options, touched, touchedCount);
+                break;
+            case OR_OPT:
+                applyTwoOpt(tour, options, touched, touchedCount);
+                OrOpt.optimize(tour, instance.getDistances(), instance.getNeighbors(neighborListSize), false, touched, touchedCount);
+                break;
+            case OR_3OPT:
+                OrOpt.optimize(tour, instance.getDistances(), instance.getNeighbors(neighborListSize), true, touched, touchedCount);
+                break;
+            case LIN_KERNIGHAN:
+                if (tour.size() <= 4 * neighborListSize) {
+                    TwoOpt.optimize(tour, instance.getDistances(), TwoOpt.Strategy.FIRST_IMPROVEMENT);
+                }
+                LinKernighan.optimize(tour, instance.getDistances(), instance.getNeighbors(neighborListSize), touched, touchedCount);
+                break;
         }
+    }
 
-        // 3. Take route[k+1] to end and add them in order to newRoute
-        for (int c = k + 1; c < route.size(); c++) {
-            newRoute.add(route.get(c));
+    /**
+     * Collects the nodes at the given positions of a tour, together with their tour neighbours.
+     *
+     * @param tour The tour.
+     * @param positions The positions that changed.
+     * @param count The number of valid entries in {@code positions}.
+     * @param touched Output buffer of at least {@code 3 * count} entries.
+     * @return The number of nodes written to {@code touched}.
+     */
+    private static int touchPositions(Tour tour, int[] positions, int count, int[] touched) {
+        int size = tour.size();
+        int touchedCount = 0;
+        for (int c = 0; c < count; c++) {
+            int p = positions[c];
+            touched[touchedCount++] = tour.get(p == 0 ? size - 1 : p - 1);
+            touched[touchedCount++] = tour.get(p);
+            touched[touchedCount++] = tour.get(p + 1 == size ? 0 : p + 1);
         }
-
-        return newRoute;
+        return touchedCount;
     }
 
 
-    public static List<Integer> dumbHeuristic(List<Node> nodes) {
-        Node startNode = NodeUtil.findStartNode(nodes);
-        List<Node> unvisited = new ArrayList<>(nodes);
-        List<Integer> path = new ArrayList<>();
-
-        Node current = startNode;
-        while (!unvisited.isEmpty()) {
-            path.add(current.id);
+    /**
+     * Builds a route with the nearest neighbour heuristic, starting from the depot.
+     * Nearest unvisited nodes are found with a {@link SpatialGrid}.
+     *
+     * @param instance The instance whose nodes are visited.
+     * @return The route, as node IDs.
+     */
+    public static List<Integer> dumbHeuristic(Instance instance) {
+        SolverEvents.Construction event = new SolverEvents.Construction();
+        event.begin();
+        long start = SearchMetrics.start();
+        SpatialGrid unvisited = new SpatialGrid(instance);
+        List<Integer> path = new ArrayList<>(instance.size());
+
+        int current = instance.getDepotIndex();
+        while (current != -1) {
+            path.add(instance.getIdOf(current));
             unvisited.remove(current);
-
-            Node nextNode = findClosestNode(current, unvisited);
-            if (nextNode == null) {
-                break;
-            }
-            current = nextNode;
+            current = unvisited.nearest(current);
         }
 
+        SearchMetrics.stop(SearchMetrics.Phase.CONSTRUCTION, start);
+        event.end();
+        if (event.shouldCommit()) {
+            event.set(instance, "nearest neighbour", NodeUtil.totalDistance(path, instance.getDistances()));
+            event.commit();
+        }
         return path;
     }
 
-    private static Node findClosestNode(Node current, List<Node> unvisited) {
-        Node closest = null;
-        double minDistance = Double.MAX_VALUE;
-
-        for (Node node : unvisited) {
-            double distance = Node.GetDistance(current, node);
-            if (distance < minDistance) {
-                minDistance = distance;
-                closest = node;
-            }
-        }
 
-        return closest;
+    /**
+     * Applies Iterated Local Search with 2-opt as the local search method.
+     *
+     * @param initialRoute The initial route.
+     * @param instance     The instance the route belongs to.
+     * @param maxIter The maximum number of iterations to perform.
+     * @param maxIterWithoutImprovement The maximum number of iterations without improvement before stopping.
+     * @return An improved route.
+     */
+    public static List<Integer> iteratedLocalSearchWithTwoOpt(List<Integer> initialRoute, Instance instance, int maxIter, int maxIterWithoutImprovement) {
+        return iteratedLocalSearchWithTwoOpt(initialRoute, instance, maxIter, maxIterWithoutImprovement, new Random());
     }
 
-
     /**
-     * Applies Iterated Local Search with 2-opt as the local search method.
+     * Applies Iterated Local Search with 2-opt as the local search method, drawing perturbations
+     * from the given random generator so that independent runs can be seeded and run concurrently.
      *
      * @param initialRoute The initial route.
-     * @param nodes        The list of all nodes.
+     * @param instance     The instance the route belongs to.
      * @param maxIter The maximum number of iterations to perform.
      * @param maxIterWithoutImprovement The maximum number of iterations without improvement before stopping.
+     * @param random The random generator used by the perturbations.
      * @return An improved route.
      */
-    public static List<Integer> iteratedLocalSearchWithTwoOpt(List<Integer> initialRoute, List<Node> nodes, int maxIter, int maxIterWithoutImprovement) {
-        List<Integer> currentRoute = new ArrayList<>(initialRoute);
-        List<Integer> bestRoute = new ArrayList<>(currentRoute);
-        double bestDistance = NodeUtil.totalDistance(currentRoute, nodes);
-        Random random = new Random();
+    public static List<Integer> iteratedLocalSearchWithTwoOpt(List<Integer> initialRoute, Instance instance, int maxIter, int maxIterWithoutImprovement, Random random) {
+        return iteratedLocalSearch(Tour.fromIds(initialRoute, instance), maxIter, maxIterWithoutImprovement, random,
+                SearchOptions.DEFAULT, Deadline.NONE).toIds();
+    }
+
+    /**
+     * Applies Iterated Local Search with the local search of the options until the iteration
+     * budget is spent, the search stagnates or the deadline passes, whichever comes first. Each
+     * iteration perturbs a copy of the current tour with {@link #calculatePerturbationStrength}
+     * triple shifts, re-optimizes it, and lets a new acceptance criterion of the options decide
+     * whether the search continues from it.
+     *
+     * @param currentRoute The initial tour, used as one of the working tours of the search.
+     * @param maxIter The maximum number of iterations to perform.
+     * @param maxIterWithoutImprovement The maximum number of iterations without improvement before stopping.
+     * @param random The random generator used by the perturbations.
+     * @param options The local search and acceptance criterion.
+     * @param deadline The time after which no new iteration starts.
+     * @return The best tour found.
+     */
+    static Tour iteratedLocalSearch(Tour currentRoute, int maxIter, int maxIterWithoutImprovement, Random random,
+                                    SearchOptions options, Deadline deadline) {
+        DistanceMatrix distances = currentRoute.getInstance().getDistances();
+        Tour bestRoute = new Tour(currentRoute.getInstance());
+        bestRoute.copyFrom(currentRoute);
+        Tour candidateRoute = new Tour(currentRoute.getInstance());
+        double currentDistance = currentRoute.length(distances);
+        double bestDistance = currentDistance;
+        Acceptance acceptance = options.newAcceptance();
+        acceptance.start(currentDistance, maxIter);
+        int[] shifted = new int[3 * MAX_PERTURBATION_STRENGTH];
+        int[] touched = new int[9 * MAX_PERTURBATION_STRENGTH];
+        ProgressLog progressLog = new ProgressLog(LOGGER);
+        // Counted locally and added to the metrics once at the end
+        long iterations = 0;
+        long perturbations = 0;
+        long improvements = 0;
+        long newBests = 0;
 
         int lastImprovementIteration = 0; // Initialize the last improvement iteration
 
         for (int iteration = 0; iteration < maxIter; iteration++) {
-            List<Integer> perturbedRoute = applyTripleShift(currentRoute, random);
-            List<Integer> localOptimumRoute = applyTwoOpt(perturbedRoute, nodes);
+            iterations++;
+            candidateRoute.copyFrom(currentRoute);
+            int strength = calculatePerturbationStrength(iteration, lastImprovementIteration, maxIterWithoutImprovement);
+            SolverEvents.Perturbation perturbation = new SolverEvents.Perturbation();
+            perturbation.begin();
+            int shiftedCount = 0;
+            for (int s = 0; s < strength; s++) {
+                shiftedCount += applyTripleShift(candidateRoute, random, shifted, shiftedCount);
+            }
+            perturbation.end();
+            if (perturbation.shouldCommit()) {
+                perturbation.set(candidateRoute.getInstance(), iteration, strength, candidateRoute.length(distances));
+                perturbation.commit();
+            }
+            perturbations += strength;
+            if (shiftedCount > 0) {
+                applyLocalSearch(candidateRoute, options, touched, touchPositions(candidateRoute, shifted, shiftedCount, touched));
+            }
 
-            double perturbedDistance = NodeUtil.totalDistance(localOptimumRoute, nodes);
-            if (perturbedDistance < bestDistance) {
-                bestRoute = new ArrayList<>(localOptimumRoute);
-                bestDistance = perturbedDistance;
+            double candidateDistance = candidateRoute.length(distances);
+            if (candidateDistance < currentDistance) {
+                improvements++;
+            }
+            if (candidateDistance < bestDistance) {
+                newBests++;
+                bestRoute.copyFrom(candidateRoute);
+                bestDistance = candidateDistance;
                 lastImprovementIteration = iteration; // Update the last improvement iteration
             }
+            if (acceptance.accept(candidateDistance, currentDistance, bestDistance, random)) {
+                Tour previous = currentRoute;
+                currentRoute = candidateRoute;
+                candidateRoute = previous;
+                currentDistance = candidateDistance;
+            }
 
             // Stop if no improvement is seen for maxIterWithoutImprovement iterations
             if (iteration - lastImprovementIteration >= maxIterWithoutImprovement) {
-                System.out.println("Stopping early due to no improvement.");
+                LOGGER.fine("ILS stopping early due to no improvement.");
+                break;
+            }
+            if (deadline.expired()) {
+                LOGGER.fine("ILS stopping at the deadline.");
                 break;
             }
 
-            // Print the progress as a percentage
-            double progress = (double) iteration / maxIter * 100;
-            System.out.printf("Iteration %d of %d (%.2f%% complete)  distance : %f\n", iteration + 1, maxIter, progress, bestDistance);
-
-            currentRoute = new ArrayList<>(localOptimumRoute); // Update currentRoute to the locally optimized route
+            // Log the progress as a percentage, at most once per interval
+            if (progressLog.isDue()) {
+                double progress = (double) iteration / maxIter * 100;
+                progressLog.log("ILS iteration %d of %d (%.2f%% complete)  distance : %f", iteration + 1, maxIter, progress, bestDistance);
+            }
         }
 
+        SearchMetrics.add(SearchMetrics.Counter.ILS_ITERATIONS, iterations);
+        SearchMetrics.add(SearchMetrics.Counter.PERTURBATIONS, perturbations);
+        SearchMetrics.add(SearchMetrics.Counter.PERTURBATION_IMPROVEMENTS, improvements);
+        SearchMetrics.add(SearchMetrics.Counter.PERTURBATION_NEW_BESTS, newBests);
         return bestRoute;
     }
 
@@ -149,14 +308,16 @@ public class RouteOptimizationAlgorithms {
     /**
      * Uses the Ackley function to determine the perturbation strategy.
      *
-     * @param route The current route.
+     * @param route The current route, perturbed in place.
      * @param iteration The current iteration number.
-     * @return A perturbed route.
+     * @return The perturbed route.
      */
-    private static List<Integer> perturbRoute(List<Integer> route, int iteration) {
+    private static Tour perturbRoute(Tour route, int iteration) {
         double ackleyValue = calculateAckleyValue(iteration);
         int swapsToPerform = (int) (ackleyValue * 1.5 );
-        System.out.println("SWAP " + swapsToPerform + " " + ackleyValue);
+        if (LOGGER.isLoggable(Level.FINE)) {
+            LOGGER.fine("SWAP " + swapsToPerform + " " + ackleyValue);
+        }
         for (int i = 0; i < swapsToPerform; i++) {
             swapRandomElements(route);
         }
@@ -169,11 +330,11 @@ public class RouteOptimizationAlgorithms {
      *
      * @param route The route to be modified.
      */
-    private static void swapRandomElements(List<Integer> route) {
+    private static void swapRandomElements(Tour route) {
         Random random = new Random();
         int index1 = random.nextInt(route.size());
         int index2 = random.nextInt(route.size());
-        Collections.swap(route, index1, index2);
+        route.swap(index1, index2);
     }
 
     /**
@@ -197,41 +358,73 @@ public class RouteOptimizationAlgorithms {
     /**
      * Generates a random route from a start node for a given set of nodes.
      *
-     * @param nodes The list of nodes to include in the route.
-     * @return A random route starting from the start node.
+     * @param instance The instance whose nodes are included in the route.
+     * @return A random route starting from the depot.
      */
-    public static List<Integer> randomHeuristic(List<Node> nodes) {
-        Node startNode = NodeUtil.findStartNode(nodes);
-        List<Node> unvisited = new ArrayList<>(nodes);
-        List<Integer> path = new ArrayList<>();
-
-        // Remove the start node from the unvisited list and add it to the path
-        unvisited.remove(startNode);
-        path.add(startNode.id);
+    public static List<Integer> randomHeuristic(Instance instance) {
+        return randomHeuristic(instance, new Random());
+    }
 
-        // Shuffle the remaining unvisited nodes
-        Collections.shuffle(unvisited);
+    /**
+     * Generates a random route from the depot, shuffled with the given random generator.
+     *
+     * @param instance The instance whose nodes are included in the route.
+     * @param random The random generator used to shuffle the nodes.
+     * @return A random route starting from the depot.
+     */
+    public static List<Integer> randomHeuristic(Instance instance, Random random) {
+        Tour path = new Tour(instance);
+        randomHeuristic(path, random);
+        return path.toIds();
+    }
 
-        // Add the shuffled nodes to the path
-        for (Node node : unvisited) {
-            path.add(node.id);
+    /**
+     * Fills a tour with a random route from the depot, shuffled with the given random generator.
+     *
+     * @param path The tour to fill; its previous content is discarded.
+     * @param random The random generator used to shuffle the nodes.
+     */
+    static void randomHeuristic(Tour path, Random random) {
+        SolverEvents.Construction event = new SolverEvents.Construction();
+        event.begin();
+        long start = SearchMetrics.start();
+        Instance instance = path.getInstance();
+        path.clear();
+
+        // The route starts at the depot, followed by every other node
+        path.add(instance.getDepotIndex());
+        for (int i = 0; i < instance.size(); i++) {
+            if (i != instance.getDepotIndex()) {
+                path.add(i);
+            }
         }
 
-        return path;
+        // Shuffle the nodes after the depot, as Collections.shuffle does
+        for (int i = path.size() - 1; i > 1; i--) {
+            path.swap(i, 1 + random.nextInt(i));
+        }
+        SearchMetrics.stop(SearchMetrics.Phase.CONSTRUCTION, start);
+        event.end();
+        if (event.shouldCommit()) {
+            event.set(instance, "random", path.length(instance.getDistances()));
+            event.commit();
+        }
     }
     /**
-     * Calculates the strength of the perturbation based on the current state of the search.
+     * Calculates the strength of the perturbation based on the current state of the search:
+     * the longer the search stagnates, relative to its patience, the stronger the perturbation.
      *
      * @param iteration The current iteration number.
      * @param lastImprovementIteration The iteration number of the last improvement.
-     * @return The strength of the perturbation.
+     * @param maxIterWithoutImprovement The number of iterations without improvement after which the search stops.
+     * @return The strength of the perturbation, between 1 and {@link #MAX_PERTURBATION_STRENGTH}.
      */
-    private static int calculatePerturbationStrength(int iteration, int lastImprovementIteration) {
+    private static int calculatePerturbationStrength(int iteration, int lastImprovementIteration, int maxIterWithoutImprovement) {
         int elapsedIterations = iteration - lastImprovementIteration;
-        // Example logic: increase perturbation strength if no improvements have been made for a while
-        if (elapsedIterations > 50) {
+        // Increase perturbation strength if no improvements have been made for a while
+        if (elapsedIterations > maxIterWithoutImprovement / 2) {
             return 3; // Strong perturbation
-        } else if (elapsedIterations > 20) {
+        } else if (elapsedIterations > maxIterWithoutImprovement / 5) {
             return 2; // Medium perturbation
         } else {
             return 1; // Mild perturbation
@@ -241,152 +434,339 @@ public class RouteOptimizationAlgorithms {
     /**
      * Applies the GRASP methodology to the VRP.
      *
-     * @param nodes                    The list of all nodes.
+     * @param instance                 The instance to solve.
      * @param maxIterations            The number of iterations for the GRASP algorithm.
      * @param maxIterWithoutImprovement The maximum number of iterations without improvement before stopping.
      * @return An improved route.
      */
-    public static List<Integer> grasp(List<Node> nodes, int maxIterations, int maxIterWithoutImprovement) {
-        List<Integer> bestRoute = null;
+    public static List<Integer> grasp(Instance instance, int maxIterations, int maxIterWithoutImprovement) {
+        return grasp(instance, maxIterations, maxIterWithoutImprovement, SearchOptions.DEFAULT, Deadline.NONE);
+    }
+
+    /**
+     * Applies the GRASP methodology to the VRP until the iteration budget is spent, the search
+     * stagnates or the deadline passes.
+     *
+     * @param instance                 The instance to solve.
+     * @param maxIterations            The number of iterations for the GRASP algorithm.
+     * @param maxIterWithoutImprovement The maximum number of iterations without improvement before stopping.
+     * @param options                  The local search applied to each constructed tour.
+     * @param deadline                 The time after which no new iteration starts.
+     * @return An improved route, or null if the deadline passed before the first iteration ended.
+     */
+    public static List<Integer> grasp(Instance instance, int maxIterations, int maxIterWithoutImprovement,
+                                      SearchOptions options, Deadline deadline) {
+        DistanceMatrix distances = instance.getDistances();
+        Random random = new Random();
+        Tour solution = new Tour(instance);
+        Tour bestRoute = null;
         double bestCost = Double.MAX_VALUE;
-        Node depot = NodeUtil.findStartNode(nodes); //NodeUtil.findNodeById(101, nodes);
+        ProgressLog progressLog = new ProgressLog(LOGGER);
 
         int lastImprovementIteration = 0; // Initialize the last improvement iteration
 
         for (int i = 0; i < maxIterations; i++) {
-            List<Integer> initialSolution = greedyRandomizedConstruction(nodes, depot.id, 0.2);
-            List<Integer> localOptimum = applyTwoOpt(initialSolution, nodes);
-            double localOptimumCost = NodeUtil.totalDistance(localOptimum, nodes);
+            greedyRandomizedConstruction(solution, 0.2, random);
+            applyLocalSearch(solution, options, null, 0);
+            double localOptimumCost = solution.length(distances);
 
             if (localOptimumCost < bestCost) {
-                bestRoute = new ArrayList<>(localOptimum);
+                if (bestRoute == null) {
+                    bestRoute = new Tour(instance);
+                }
+                bestRoute.copyFrom(solution);
                 bestCost = localOptimumCost;
                 lastImprovementIteration = i; // Update the last improvement iteration
             }
 
             // Stop if no improvement is seen for maxIterWithoutImprovement iterations
             if (i - lastImprovementIteration >= maxIterWithoutImprovement) {
-                System.out.println("Stopping early due to no improvement.");
+                LOGGER.fine("GRASP stopping early due to no improvement.");
+                break;
+            }
+            if (deadline.expired()) {
+                LOGGER.fine("GRASP stopping at the deadline.");
                 break;
             }
 
-            // Print the progress as a percentage
-            double progress = (double) i / maxIterations * 100;
-            System.out.printf("Iteration %d of %d (%.2f%% complete)  DISTANCE %f\n", i + 1, maxIterations, progress, bestCost);
+            // Log the progress as a percentage, at most once per interval
+            if (progressLog.isDue()) {
+                double progress = (double) i / maxIterations * 100;
+                progressLog.log("GRASP iteration %d of %d (%.2f%% complete)  DISTANCE %f", i + 1, maxIterations, progress, bestCost);
+            }
         }
 
-        return bestRoute;
+        return bestRoute == null ? null : bestRoute.toIds();
+    }
+
+
+    /**
+     * Applies the GRASP methodology with several worker threads sharing the iteration budget.
+     *
+     * @param instance                 The instance to solve.
+     * @param maxIterations            The number of iterations for the GRASP algorithm, over all workers.
+     * @param maxIterWithoutImprovement The maximum number of iterations without improvement before stopping.
+     * @param threads                  The number of worker threads.
+     * @return An improved route.
+     * @see ParallelGrasp
+     */
+    public static List<Integer> grasp(Instance instance, int maxIterations, int maxIterWithoutImprovement, int threads) {
+        return new ParallelGrasp(instance, threads, System.nanoTime())
+                .run(maxIterations, maxIterWithoutImprovement, new ElitePool(10));
     }
 
 
     /**
      * Constructs an initial solution for the VRP using a greedy randomized approach.
+     * Small instances scan every remaining candidate at each step; larger ones query a
+     * {@link SpatialGrid}, which only visits the cells around the RCL.
      *
-     * @param nodes The list of all nodes.
-     * @return A constructed route.
+     * @param instance The instance to solve.
+     * @param alpha    Parameter controlling the greediness and randomness.
+     * @param random   The random generator used to pick in the RCL.
+     * @return A constructed route starting at the depot.
      */
-    private static List<Integer> greedyRandomizedConstruction(List<Node> nodes, int depotId, double alpha) {
-        List<Integer> route = new ArrayList<>();
-        List<Node> candidateNodes = new ArrayList<>(nodes);
+    static List<Integer> greedyRandomizedConstruction(Instance instance, double alpha, Random random) {
+        Tour route = new Tour(instance);
+        greedyRandomizedConstruction(route, alpha, random);
+        return route.toIds();
+    }
+
+    /**
+     * Constructs an initial solution for the VRP using a greedy randomized approach.
+     *
+     * @param route  The tour receiving the route, starting at the depot; its previous content is discarded.
+     * @param alpha  Parameter controlling the greediness and randomness.
+     * @param random The random generator used to pick in the RCL.
+     */
+    static void greedyRandomizedConstruction(Tour route, double alpha, Random random) {
+        SolverEvents.Construction event = new SolverEvents.Construction();
+        event.begin();
+        long start = SearchMetrics.start();
+        route.clear();
+        if (route.getInstance().size() < SPATIAL_CONSTRUCTION_SIZE) {
+            scanConstruction(route, alpha, random);
+        } else {
+            spatialConstruction(route, alpha, random);
+        }
+        SearchMetrics.stop(SearchMetrics.Phase.CONSTRUCTION, start);
+        SearchMetrics.increment(SearchMetrics.Counter.GRASP_CONSTRUCTIONS);
+        event.end();
+        if (event.shouldCommit()) {
+            event.set(route.getInstance(), "greedy randomized", route.length(route.getInstance().getDistances()));
+            event.commit();
+        }
+    }
 
-        // Remove the depot from candidate nodes to prevent adding it again
-        candidateNodes.removeIf(node -> node.getId() == depotId);
+    /**
+     * Greedy randomized construction scanning every remaining candidate at each step.
+     */
+    private static void scanConstruction(Tour route, double alpha, Random random) {
+        Instance instance = route.getInstance();
+        DistanceMatrix distances = instance.getDistances();
+        int depotIndex = instance.getDepotIndex();
+
+        // Candidate node indices, the depot excluded to prevent adding it again
+        int[] candidates = new int[instance.size() - 1];
+        int remaining = 0;
+        for (int i = 0; i < instance.size(); i++) {
+            if (i != depotIndex) {
+                candidates[remaining++] = i;
+            }
+        }
+        int[] rcl = new int[candidates.length];
 
-        Random random = new Random();
-        route.add(depotId); // Start the route at the depot
+        route.add(depotIndex); // Start the route at the depot
 
-        Node lastNode = NodeUtil.findNodeById(depotId, nodes); // Find the depot node
+        int lastNode = depotIndex;
 
-        while (!candidateNodes.isEmpty()) {
-            List<Node> rcl = createRestrictedCandidateList(lastNode, candidateNodes, alpha);
-            Node selectedNode = rcl.get(random.nextInt(rcl.size()));
-            route.add(selectedNode.getId());
-            candidateNodes.remove(selectedNode);
-            lastNode = selectedNode;
+        while (remaining > 0) {
+            int rclSize = createRestrictedCandidateList(lastNode, candidates, remaining, distances, alpha, rcl);
+            int selected = rcl[random.nextInt(rclSize)];
+            lastNode = candidates[selected];
+            route.add(lastNode);
+            candidates[selected] = candidates[--remaining];
         }
 
         //route.add(depotId); // End the route at the depot
-        return route;
     }
 
     /**
      * Creates a Restricted Candidate List (RCL) based on a criterion (e.g., distance).
      *
-     * @param lastNode       The current route being constructed.
-     * @param candidateNodes The list of nodes that have not yet been added to the route.
-     * @param alpha          Parameter controlling the greediness and randomness.
-     * @return The RCL.
+     * @param lastNode   The index of the last node added to the route.
+     * @param candidates The indices of the nodes that have not yet been added to the route.
+     * @param remaining  The number of valid entries in {@code candidates}.
+     * @param distances  The distance matrix of the instance.
+     * @param alpha      Parameter controlling the greediness and randomness.
+     * @param rcl        Output buffer receiving the positions in {@code candidates} of the RCL members.
+     * @return The size of the RCL.
      */
-    private static List<Node> createRestrictedCandidateList(Node lastNode, List<Node> candidateNodes, double alpha) {
-        Map<Node, Double> distanceMap = new HashMap<>();
-
-        for (Node node : candidateNodes) {
-            double distance = Node.GetDistance(lastNode, node);
-            distanceMap.put(node, distance);
+    private static int createRestrictedCandidateList(int lastNode, int[] candidates, int remaining, DistanceMatrix distances, double alpha, int[] rcl) {
+        double minDistance = Double.MAX_VALUE;
+        double maxDistance = -Double.MAX_VALUE;
+        for (int c = 0; c < remaining; c++) {
+            double distance = distances.get(lastNode, candidates[c]);
+            minDistance = Math.min(minDistance, distance);
+            maxDistance = Math.max(maxDistance, distance);
         }
-
-        double minDistance = Collections.min(distanceMap.values());
-        double maxDistance = Collections.max(distanceMap.values());
         double threshold = minDistance + alpha * (maxDistance - minDistance);
 
-        List<Node> rcl = new ArrayList<>();
-        for (Map.Entry<Node, Double> entry : distanceMap.entrySet()) {
-            if (entry.getValue() <= threshold) {
-                rcl.add(entry.getKey());
+        int size = 0;
+        for (int c = 0; c < remaining; c++) {
+            if (distances.get(lastNode, candidates[c]) <= threshold) {
+                rcl[size++] = c;
             }
         }
 
-        return rcl;
+        return size;
+    }
+
+
+    /**
+     * Greedy randomized construction querying a {@link SpatialGrid} of the remaining candidates at each step.
+     */
+    private static void spatialConstruction(Tour route, double alpha, Random random) {
+        Instance instance = route.getInstance();
+        int depotIndex = instance.getDepotIndex();
+
+        // Nodes not yet added to the route, the depot excluded to prevent adding it again
+        SpatialGrid candidates = new SpatialGrid(instance);
+        candidates.remove(depotIndex);
+        int[] buffer = new int[instance.size()];
+
+        route.add(depotIndex); // Start the route at the depot
+
+        int lastNode = depotIndex;
+
+        while (candidates.size() > 0) {
+            lastNode = selectFromRestrictedCandidateList(lastNode, candidates, instance.getDistances(), alpha, random, buffer);
+            route.add(lastNode);
+            candidates.remove(lastNode);
+        }
+
+        //route.add(depotId); // End the route at the depot
+    }
+
+    /**
+     * Picks a node uniformly in the Restricted Candidate List (RCL) of the nodes whose distance
+     * to the last node is within the alpha band. The closest and farthest candidates bound the
+     * band, and the pick is drawn from the grid cells covering it, so the RCL is never built
+     * unless sampling keeps missing it.
+     *
+     * @param lastNode   The index of the last node added to the route.
+     * @param candidates The nodes that have not yet been added to the route.
+     * @param distances  The distance matrix of the instance.
+     * @param alpha      Parameter controlling the greediness and randomness.
+     * @param random     The random generator used to pick in the RCL.
+     * @param buffer     Scratch buffer holding at least as many entries as there are candidates.
+     * @return The index of the selected node.
+     */
+    private static int selectFromRestrictedCandidateList(int lastNode, SpatialGrid candidates, DistanceMatrix distances,
+                                                         double alpha, Random random, int[] buffer) {
+        double minDistance = distances.get(lastNode, candidates.nearest(lastNode));
+        double maxDistance = distances.get(lastNode, candidates.farthest(lastNode));
+        double threshold = minDistance + alpha * (maxDistance - minDistance);
+
+        return candidates.randomWithin(lastNode, threshold, random, buffer);
+    }
+
+
+    public static List<List<Integer>> apply2OptOnSol(List<List<Integer>> solutions, Instance instance) {
+        return optimizeRoutes(solutions, instance, SearchOptions.DEFAULT, false, Deadline.NONE);
+    }
+
+    /**
+     * Applies the local search of the {@link SearchOptions#DEFAULT default options} to each route, in place.
+     *
+     * @param solutions The routes, as lists of node IDs starting and ending at the depot.
+     * @param instance The instance the routes belong to.
+     * @return The same list, with each route improved.
+     */
+    public static List<List<Integer>> applyLocalSearchOnSol(List<List<Integer>> solutions, Instance instance) {
+        return applyLocalSearchOnSol(solutions, instance, SearchOptions.DEFAULT, Deadline.NONE);
     }
 
+    /**
+     * Applies the local search of the options to each route, in place, as long as the deadline
+     * has not passed; the remaining routes are left unchanged.
+     *
+     * @param solutions The routes, as lists of node IDs starting and ending at the depot.
+     * @param instance The instance the routes belong to.
+     * @param options The local search.
+     * @param deadline The time after which no other route is optimized.
+     * @return The same list, with the routes optimized before the deadline improved.
+     */
+    public static List<List<Integer>> applyLocalSearchOnSol(List<List<Integer>> solutions, Instance instance,
+                                                            SearchOptions options, Deadline deadline) {
+        return optimizeRoutes(solutions, instance, options, true, deadline);
+    }
 
-    public static List<List<Integer>> apply2OptOnSol(List<List<Integer>> solutions, List<Node> nodes) {
-        int depotId = NodeUtil.findStartNode(nodes).id;
-        for (int i = 0; i < solutions.size(); i++) {
+    private static List<List<Integer>> optimizeRoutes(List<List<Integer>> solutions, Instance instance, SearchOptions options,
+                                                      boolean selectedSearch, Deadline deadline) {
+        long start = SearchMetrics.start();
+        int depotId = instance.getDepotId();
+        Tour tour = new Tour(instance);
+        for (List<Integer> route : solutions) {
+            if (deadline.expired()) {
+                break;
+            }
+            // The route is optimized as a closed tour, without its closing depot
+            tour.clear();
+            for (int p = 0; p < route.size() - 1; p++) {
+                tour.add(instance.getIndexOf(route.get(p)));
+            }
+            if (selectedSearch) {
+                runLocalSearch(tour, options, null, 0);
+            } else {
+                applyTwoOpt(tour, options, null, 0);
+            }
+            tour.rotateToFront(instance.getDepotIndex());
 
-            solutions.get(i).remove(solutions.get(i).size() - 1);
-            solutions.set(i, NodeUtil.reorderListWithDepotFirst(applyTwoOpt(solutions.get(i), nodes), nodes, 0));
-            solutions.get(i).add(depotId);
+            route.clear();
+            for (int p = 0; p < tour.size(); p++) {
+                route.add(instance.getIdOf(tour.get(p)));
+            }
+            route.add(depotId);
         }
+        SearchMetrics.stop(SearchMetrics.Phase.ROUTE_LOCAL_SEARCH, start);
         return solutions;
     }
     /**
      * Applies the Triple Cross perturbation in Iterated Local Search.
+     * The two middle segments are exchanged in place with three reversals.
      *
-     * @param route The current route.
-     * @param nodes The list of all nodes.
-     * @return A perturbed route.
+     * @param route The current route, perturbed in place.
+     * @param random The random generator used to pick the cuts.
      */
-    private static List<Integer> applyTripleCrossPerturbation(List<Integer> route, List<Node> nodes) {
-        Random random = new Random();
+    private static void applyTripleCrossPerturbation(Tour route, Random random) {
         int size = route.size();
 
         // Ensure there are enough nodes to perform the perturbation
-        if (size < 6) return new ArrayList<>(route); // Return a copy of the route
+        if (size < 6) return;
 
         // Select three distinct segments in the route
         int firstCut = random.nextInt(size - 3);
         int secondCut = firstCut + 1 + random.nextInt(size - firstCut - 2);
         int thirdCut = secondCut + 1 + random.nextInt(size - secondCut - 1);
 
-        // Create new route segments
-        List<Integer> segment1 = route.subList(0, firstCut);
-        List<Integer> segment2 = route.subList(firstCut, secondCut);
-        List<Integer> segment3 = route.subList(secondCut, thirdCut);
-        List<Integer> segment4 = route.subList(thirdCut, size);
-
-        // Reassemble the route in a new order
-        List<Integer> newRoute = new ArrayList<>();
-        newRoute.addAll(segment1);
-        newRoute.addAll(segment3); // Swap segment 2 and segment 3
-        newRoute.addAll(segment2);
-        newRoute.addAll(segment4);
-
-        return newRoute;
+        // Swap segment 2 [firstCut, secondCut) and segment 3 [secondCut, thirdCut)
+        route.reverse(firstCut, thirdCut - 1);
+        route.reverse(firstCut, firstCut + thirdCut - secondCut - 1);
+        route.reverse(firstCut + thirdCut - secondCut, thirdCut - 1);
     }
 
-    private static List<Integer> applyTripleShift(List<Integer> route, Random random) {
-        if (route.size() < 4) return new ArrayList<>(route); // Ensure enough nodes for shifting
+    /**
+     * Rotates the nodes at three distinct random positions of the route, the depot excepted.
+     *
+     * @param route The current route, perturbed in place.
+     * @param random The random generator used to pick the positions.
+     * @param shifted Output buffer receiving the positions that changed, from index {@code from} on.
+     * @param from The index of {@code shifted} where the first position is written.
+     * @return The number of positions that changed, 0 if the route is too short.
+     */
+    private static int applyTripleShift(Tour route, Random random, int[] shifted, int from) {
+        if (route.size() < 4) return 0; // Ensure enough nodes for shifting
 
         int size = route.size();
         int first = 1 + random.nextInt(size - 3); // Avoid depot
@@ -400,27 +780,32 @@ public class RouteOptimizationAlgorithms {
         }
 
         // Perform the shift
-        List<Integer> newRoute = new ArrayList<>(route);
-        int temp = newRoute.get(first);
-        newRoute.set(first, newRoute.get(second));
-        newRoute.set(second, newRoute.get(third));
-        newRoute.set(third, temp);
-
-        return newRoute;
-    }
-    private static List<Integer> applyDoubleReplace(List<Integer> route, List<Node> nodes, Random random) {
-        if (route.size() < 4) return new ArrayList<>(route); // Need at least 4 nodes
-
-        Set<Integer> routeSet = new HashSet<>(route);
-        List<Integer> nonRouteNodes = new ArrayList<>();
-        for (Node node : nodes) {
-            if (!routeSet.contains(node.id)) {
-                nonRouteNodes.add(node.id);
-            }
-        }
+        route.swap(first, second);
+        route.swap(second, third);
+
+        shifted[from] = first;
+        shifted[from + 1] = second;
+        shifted[from + 2] = third;
+        return 3;
+    }
+
+    /**
+     * Replaces the nodes at two distinct random positions of the route, the depot excepted,
+     * with two random nodes of the instance that are not in the route.
+     *
+     * @param route The current route, perturbed in place.
+     * @param random The random generator used to pick the positions and the nodes.
+     * @param replaced Output buffer of at least 2 entries receiving the positions that changed.
+     * @return The number of positions that changed, 0 if the replacement is not possible.
+     */
+    private static int applyDoubleReplace(Tour route, Random random, int[] replaced) {
+        if (route.size() < 4) return 0; // Need at least 4 nodes
+
+        Instance instance = route.getInstance();
+        int nonRouteNodes = instance.size() - route.size();
 
         // Ensure there are at least two nodes to replace with
-        if (nonRouteNodes.size() < 2) return new ArrayList<>(route);
+        if (nonRouteNodes < 2) return 0;
 
         // Pick two distinct nodes from the route to replace (excluding depot)
         int replaceIndex1 = 1 + random.nextInt(route.size() - 2);
@@ -430,98 +815,123 @@ public class RouteOptimizationAlgorithms {
         }
 
         // Pick two distinct nodes from outside of the route
-        int newNode1Index = random.nextInt(nonRouteNodes.size());
-        int newNode2Index = random.nextInt(nonRouteNodes.size());
+        int newNode1Index = random.nextInt(nonRouteNodes);
+        int newNode2Index = random.nextInt(nonRouteNodes);
         while (newNode2Index == newNode1Index) {
-            newNode2Index = random.nextInt(nonRouteNodes.size());
+            newNode2Index = random.nextInt(nonRouteNodes);
         }
+        int newNode1 = nthNodeOutside(route, newNode1Index);
+        int newNode2 = nthNodeOutside(route, newNode2Index);
 
-        List<Integer> newRoute = new ArrayList<>(route);
-        newRoute.set(replaceIndex1, nonRouteNodes.get(newNode1Index));
-        newRoute.set(replaceIndex2, nonRouteNodes.get(newNode2Index));
+        route.set(replaceIndex1, newNode1);
+        route.set(replaceIndex2, newNode2);
 
-        return newRoute;
+        replaced[0] = replaceIndex1;
+        replaced[1] = replaceIndex2;
+        return 2;
     }
 
-    private static List<Integer> applyCombinedPerturbation(List<Integer> route, List<Node> nodes, Random random) {
+    /**
+     * @return The index of the n-th node of the instance, in index order, that is not in the route.
+     */
+    private static int nthNodeOutside(Tour route, int n) {
+        for (int node = 0; ; node++) {
+            if (route.positionOf(node) < 0 && n-- == 0) {
+                return node;
+            }
+        }
+    }
+
+    /**
+     * Applies either a double replace or a triple shift, with equal probability.
+     *
+     * @param route The current route, perturbed in place.
+     * @param random The random generator used by the perturbations.
+     * @param changed Output buffer of at least 3 entries receiving the positions that changed.
+     * @return The number of positions that changed.
+     */
+    private static int applyCombinedPerturbation(Tour route, Random random, int[] changed) {
         if (random.nextBoolean()) {
-            return applyDoubleReplace(route, nodes, random);
+            return applyDoubleReplace(route, random, changed);
         } else {
-            return applyTripleShift(route, random);
+            return applyTripleShift(route, random, changed, 0);
         }
     }
 
-    public static List<Integer> pilotHeuristic(List<Node> nodes) {
-        if (nodes.isEmpty()) return new ArrayList<>();
-
-        List<Node> nodesCompute = new LinkedList<>(nodes);
-        List<Integer> path = new ArrayList<>();
-
-        Node current = nodesCompute.remove(0);
-        path.add(current.getId());
-
-        while (!nodesCompute.isEmpty()) {
-            List<Node> twoClosestNodes = findSecondClosestNode(current, nodesCompute);
-            List<Node> workList = new LinkedList<>(nodesCompute);
-            workList.remove(twoClosestNodes.get(0));
-            workList.remove(twoClosestNodes.get(1));
-
-            Node bestNode = findTheBestOne(twoClosestNodes, workList, 2); // numberOfEvaluations is set to 2
-            path.add(bestNode.getId());
+    /**
+     * Builds a route with a pilot heuristic: at each step the two nearest unvisited nodes are
+     * evaluated by a short greedy look-ahead, and the one with the shorter look-ahead is kept.
+     * Nearest unvisited nodes are found with a {@link SpatialGrid}.
+     *
+     * @param instance The instance whose nodes are visited.
+     * @return The route, as node IDs, starting from the first node of the instance.
+     */
+    public static List<Integer> pilotHeuristic(Instance instance) {
+        if (instance.size() == 0) return new ArrayList<>();
+
+        SpatialGrid nodesCompute = new SpatialGrid(instance);
+        List<Integer> path = new ArrayList<>(instance.size());
+        int[] twoClosestNodes = new int[2];
+        double[] twoClosestDistances = new double[2];
+
+        int current = 0;
+        nodesCompute.remove(current);
+        path.add(instance.getIdOf(current));
+
+        while (nodesCompute.size() > 0) {
+            int found = nodesCompute.nearest(current, 2, twoClosestNodes, twoClosestDistances);
+            int bestNode = found == 1 ? twoClosestNodes[0]
+                    : findTheBestOne(twoClosestNodes, nodesCompute, instance.getDistances(), 2); // numberOfEvaluations is set to 2
+            path.add(instance.getIdOf(bestNode));
             nodesCompute.remove(bestNode);
             current = bestNode;
         }
 
         return path;
     }
-    private static List<Node> findSecondClosestNode(Node current, List<Node> nodes) {
-        Node closest = null;
-        Node secondClosest = null;
-        double minDistanceFirst = Double.MAX_VALUE;
-        double minDistanceSecond = Double.MAX_VALUE;
-
-        for (Node node : nodes) {
-            double distance = Node.GetDistance(current, node);
-            if (distance < minDistanceFirst) {
-                minDistanceSecond = minDistanceFirst;
-                minDistanceFirst = distance;
-                secondClosest = closest;
-                closest = node;
-            } else if (distance < minDistanceSecond && distance != minDistanceFirst) {
-                minDistanceSecond = distance;
-                secondClosest = node;
-            }
-        }
-
-        return Arrays.asList(closest, secondClosest);
-    }
 
-
-    private static Node findTheBestOne(List<Node> candidates, List<Node> remainingNodes, int numberOfEvaluations) {
-        Node bestNode = null;
+    /**
+     * Picks, among two candidates, the one whose greedy look-ahead through the remaining nodes is the shortest.
+     */
+    private static int findTheBestOne(int[] candidates, SpatialGrid remainingNodes, DistanceMatrix distances, int numberOfEvaluations) {
+        int bestNode = -1;
         double bestScore = Double.MAX_VALUE;
 
-        for (Node candidate : candidates) {
-            double score = simulateRoute(candidate, remainingNodes, numberOfEvaluations);
+        // The look-ahead must not go through either candidate
+        remainingNodes.remove(candidates[0]);
+        remainingNodes.remove(candidates[1]);
+        for (int candidate : candidates) {
+            double score = simulateRoute(candidate, remainingNodes, distances, numberOfEvaluations);
             if (score < bestScore) {
                 bestScore = score;
                 bestNode = candidate;
             }
         }
+        remainingNodes.add(candidates[0]);
+        remainingNodes.add(candidates[1]);
 
         return bestNode;
     }
 
-    private static double simulateRoute(Node candidate, List<Node> remainingNodes, int numberOfEvaluations) {
+    /**
+     * Follows the nearest neighbour path from a candidate for a few steps and returns its length.
+     * Nodes visited by the look-ahead are removed from the grid temporarily and restored before returning.
+     */
+    private static double simulateRoute(int candidate, SpatialGrid remainingNodes, DistanceMatrix distances, int numberOfEvaluations) {
         double totalDistance = 0;
-        Node current = candidate;
-        List<Node> nodesToEvaluate = new ArrayList<>(remainingNodes);
+        int current = candidate;
+        int[] visited = new int[numberOfEvaluations];
+        int visitedCount = 0;
 
-        for (int i = 0; i < numberOfEvaluations && !nodesToEvaluate.isEmpty(); i++) {
-            Node nextClosest = findClosestNode(current, nodesToEvaluate); // Assurez-vous que cette méthode est définie
-            totalDistance += Node.GetDistance(current, nextClosest);
+        for (int i = 0; i < numberOfEvaluations && remainingNodes.size() > 0; i++) {
+            int nextClosest = remainingNodes.nearest(current);
+            totalDistance += distances.get(current, nextClosest);
             current = nextClosest;
-            nodesToEvaluate.remove(nextClosest);
+            remainingNodes.remove(nextClosest);
+            visited[visitedCount++] = nextClosest;
+        }
+        for (int i = 0; i < visitedCount; i++) {
+            remainingNodes.add(visited[i]);
         }
 
         return totalDistance;
@@ -1,71 +1,275 @@
 package tp.vrp;
 
-import tp.vrp.Data.Node;
+import tp.vrp.Data.DistanceMatrix;
+import tp.vrp.Data.Instance;
+import tp.vrp.Data.NeighborLists;
 
 import java.util.*;
 
+/**
+ * Capacitated Clarke-Wright savings constructor.
+ * <p>
+ * Savings are only computed for candidate-neighbour pairs and kept in primitive arrays,
+ * ordered through an index max-heap. Each route is a doubly linked list of customers whose
+ * ends and load are stored on the union-find root of the route, so checking whether two
+ * customers are route ends of different routes with enough capacity is O(1).
+ */
 public class SavingsAlgorithm {
 
-    private List<Node> nodes;
-    private Node depot;
-    private List<List<Node>> routes;
+    /** Number of nearest neighbours for which a saving is computed. */
+    public static final int DEFAULT_NEIGHBORS = 30;
 
-    public SavingsAlgorithm(List<Node> nodes, Node depot) {
-        this.nodes = new ArrayList<>(nodes);
-        this.depot = depot;
-        this.routes = new ArrayList<>();
+    private Instance instance;
+    private DistanceMatrix distances;
+    private int neighborCount;
+
+    // Savings, indexed by pair
+    private double[] savings;
+    private int[] pairA;
+    private int[] pairB;
+    private int pairCount;
+
+    // Routes: linked list of customers, ends and load stored on the union-find root
+    private int[] parent;
+    private int[] next;
+    private int[] previous;
+    private int[] head;
+    private int[] tail;
+    private int[] length;
+    private double[] load;
+
+    public SavingsAlgorithm(Instance instance) {
+        this(instance, DEFAULT_NEIGHBORS);
+    }
+
+    /**
+     * @param instance      The instance to solve.
+     * @param neighborCount The number of nearest neighbours for which a saving is computed.
+     */
+    public SavingsAlgorithm(Instance instance, int neighborCount) {
+        this.instance = instance;
+        this.distances = instance.getDistances();
+        this.neighborCount = neighborCount;
     }
 
-    public List<List<Node>> calculateRoutes() {
-        List<Saving> savings = calculateSavings();
+    /**
+     * Builds the routes by merging them in decreasing order of savings while capacity allows.
+     *
+     * @return The routes, as lists of node IDs starting and ending at the depot.
+     */
+    public List<List<Integer>> calculateRoutes() {
+        initRoutes();
+        calculateSavings();
 
-        // Sort savings in descending order
-        savings.sort(Comparator.comparingDouble(Saving::getAmount).reversed());
+        // Max-heap of pair indices, keyed by saving
+        int[] heap = new int[pairCount];
+        for (int p = 0; p < pairCount; p++) {
+            heap[p] = p;
+        }
+        int heapSize = pairCount;
+        for (int h = heapSize / 2 - 1; h >= 0; h--) {
+            siftDown(heap, heapSize, h);
+        }
 
-        for (Saving saving : savings) {
-            // Try to combine routes for each pair of nodes
-            combineRoutes(saving);
+        while (heapSize > 0) {
+            int pair = heap[0];
+            heap[0] = heap[--heapSize];
+            siftDown(heap, heapSize, 0);
+            if (savings[pair] <= 0) {
+                break; // Remaining merges cannot shorten the solution
+            }
+            combineRoutes(pairA[pair], pairB[pair]);
         }
 
-        return routes;
+        return collectRoutes();
     }
 
-    private List<Saving> calculateSavings() {
-        List<Saving> savings = new ArrayList<>();
-        for (Node nodeA : nodes) {
-            for (Node nodeB : nodes) {
-                if (!nodeA.equals(nodeB)) {
-                    double savingAmount = Node.GetDistance(depot, nodeA) +
-                            Node.GetDistance(depot, nodeB) -
-                            Node.GetDistance(nodeA, nodeB);
-                    savings.add(new Saving(nodeA, nodeB, savingAmount));
+    private void initRoutes() {
+        int n = instance.size();
+        parent = new int[n];
+        next = new int[n];
+        previous = new int[n];
+        head = new int[n];
+        tail = new int[n];
+        length = new int[n];
+        load = new double[n];
+        for (int i = 0; i < n; i++) {
+            parent[i] = i;
+            next[i] = -1;
+            previous[i] = -1;
+            head[i] = i;
+            tail[i] = i;
+            length[i] = 1;
+            load[i] = instance.getDemand(i);
+        }
+    }
+
+    private void calculateSavings() {
+        int depot = instance.getDepotIndex();
+        NeighborLists neighbors = instance.getNeighbors(neighborCount);
+        int k = neighbors.getK();
+        int capacity = instance.size() * k;
+        savings = new double[capacity];
+        pairA = new int[capacity];
+        pairB = new int[capacity];
+        pairCount = 0;
+
+        for (int a = 0; a < instance.size(); a++) {
+            if (a == depot) {
+                continue;
+            }
+            for (int r = 0; r < k; r++) {
+                int b = neighbors.get(a, r);
+                // Each pair once: from its smaller end, or from a if a is not in b's list
+                if (b == depot || (b < a && isNeighbor(neighbors, b, a))) {
+                    continue;
                 }
+                savings[pairCount] = distances.get(depot, a) + distances.get(depot, b) - distances.get(a, b);
+                pairA[pairCount] = a;
+                pairB[pairCount] = b;
+                pairCount++;
             }
         }
-        return savings;
     }
 
-    private void combineRoutes(Saving saving) {
-        // Logic to combine routes based on saving without violating constraints
-        // This is quite complex and involves checking if nodes are already in a route,
-        // whether they can be combined without exceeding capacity, etc.
+    private static boolean isNeighbor(NeighborLists neighbors, int node, int candidate) {
+        for (int r = 0; r < neighbors.getK(); r++) {
+            if (neighbors.get(node, r) == candidate) {
+                return true;
+            }
+        }
+        return false;
     }
 
-    private static class Saving {
-        private Node nodeA;
-        private Node nodeB;
-        private double amount;
+    private void siftDown(int[] heap, int size, int h) {
+        int pair = heap[h];
+        while (true) {
+            int child = 2 * h + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && savings[heap[child + 1]] > savings[heap[child]]) {
+                child++;
+            }
+            if (savings[heap[child]] <= savings[pair]) {
+                break;
+            }
+            heap[h] = heap[child];
+            h = child;
+        }
+        heap[h] = pair;
+    }
+
+    private int find(int node) {
+        while (parent[node] != node) {
+            parent[node] = parent[parent[node]];
+            node = parent[node];
+        }
+        return node;
+    }
+
+    /**
+     * Merges the routes of a and b so that a and b become adjacent, if both are route ends,
+     * belong to different routes and the merged load fits in a vehicle.
+     */
+    private void combineRoutes(int a, int b) {
+        int routeA = find(a);
+        int routeB = find(b);
+        if (routeA == routeB || load[routeA] + load[routeB] > instance.getCapacity()) {
+            return;
+        }
+        boolean aIsHead = head[routeA] == a;
+        boolean aIsTail = tail[routeA] == a;
+        boolean bIsHead = head[routeB] == b;
+        boolean bIsTail = tail[routeB] == b;
+        if (!(aIsHead || aIsTail) || !(bIsHead || bIsTail)) {
+            return; // Interior customer
+        }
+
+        // Orient the routes as ... a -> b ...
+        if (!aIsTail) {
+            if (bIsTail) {
+                // b ends its route and a starts its route: link as ... b -> a ...
+                int tmp = routeA;
+                routeA = routeB;
+                routeB = tmp;
+                tmp = a;
+                a = b;
+                b = tmp;
+            } else if (length[routeA] <= length[routeB]) {
+                reverse(routeA);
+            } else {
+                reverse(routeB);
+                int tmp = routeA;
+                routeA = routeB;
+                routeB = tmp;
+                tmp = a;
+                a = b;
+                b = tmp;
+            }
+        } else if (!bIsHead) {
+            if (length[routeB] <= length[routeA]) {
+                reverse(routeB);
+            } else {
+                reverse(routeA);
+                int tmp = routeA;
+                routeA = routeB;
+                routeB = tmp;
+                tmp = a;
+                a = b;
+                b = tmp;
+            }
+        }
 
-        public Saving(Node nodeA, Node nodeB, double amount) {
-            this.nodeA = nodeA;
-            this.nodeB = nodeB;
-            this.amount = amount;
+        next[a] = b;
+        previous[b] = a;
+        int newHead = head[routeA];
+        int newTail = tail[routeB];
+        int root = routeA;
+        int child = routeB;
+        if (length[routeA] < length[routeB]) {
+            root = routeB;
+            child = routeA;
         }
+        parent[child] = root;
+        head[root] = newHead;
+        tail[root] = newTail;
+        length[root] = length[routeA] + length[routeB];
+        load[root] = load[routeA] + load[routeB];
+    }
 
-        public double getAmount() {
-            return amount;
+    /**
+     * Reverses the linked list of a route, given its root.
+     */
+    private void reverse(int route) {
+        int node = head[route];
+        while (node != -1) {
+            int following = next[node];
+            next[node] = previous[node];
+            previous[node] = following;
+            node = following;
         }
+        int tmp = head[route];
+        head[route] = tail[route];
+        tail[route] = tmp;
+    }
 
-        // Getters and setters
+    private List<List<Integer>> collectRoutes() {
+        int depot = instance.getDepotIndex();
+        int depotId = instance.getDepotId();
+        List<List<Integer>> routes = new ArrayList<>();
+        for (int i = 0; i < instance.size(); i++) {
+            if (i == depot || find(i) != i) {
+                continue;
+            }
+            List<Integer> route = new ArrayList<>(length[i] + 2);
+            route.add(depotId);
+            for (int node = head[i]; node != -1; node = next[node]) {
+                route.add(instance.getIdOf(node));
+            }
+            route.add(depotId);
+            routes.add(route);
+        }
+        return routes;
     }
 }
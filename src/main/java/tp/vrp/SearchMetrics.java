@@ -0,0 +1,212 @@
+package tp.vrp;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Process-wide telemetry of the searches: move and perturbation counters, time spent in each
+ * phase of the pipeline, and the trace of the best solution cost over time.
+ * <p>
+ * Metrics are disabled by default; the instrumented code then only reads a volatile flag.
+ * Once {@link #enable() enabled}, counters are striped {@link LongAdder}s, so worker threads do
+ * not contend on them, and the hot loops add their local counts once per call rather than once
+ * per move. Phase timers read {@link System#nanoTime()} at the start and end of each phase. The
+ * trace keeps one point per improvement of the best cost, whichever solver reports it, so it is
+ * meaningful for one solver run at a time.
+ */
+public final class SearchMetrics {
+
+    /**
+     * Event counters.
+     */
+    public enum Counter {
+        /** (i, k) pairs evaluated by the exhaustive 2-opt on short tours. */
+        TWO_OPT_PAIRS_EVALUATED,
+        /** Nodes scanned by the neighbour-list 2-opt, each trying up to 2k candidate edges. */
+        TWO_OPT_NODES_SCANNED,
+        /** 2-opt moves applied. */
+        TWO_OPT_MOVES,
+        /** Iterations of the iterated local search. */
+        ILS_ITERATIONS,
+        /** Triple shifts applied by the ILS perturbation. */
+        PERTURBATIONS,
+        /** ILS iterations whose local optimum is shorter than the current tour. */
+        PERTURBATION_IMPROVEMENTS,
+        /** ILS iterations whose local optimum is a new best tour. */
+        PERTURBATION_NEW_BESTS,
+        /** Tours built by the GRASP construction. */
+        GRASP_CONSTRUCTIONS
+    }
+
+    /**
+     * Timed phases of the pipeline.
+     */
+    public enum Phase {
+        /** Construction of giant tours: nearest neighbour, random and greedy randomized. */
+        CONSTRUCTION,
+        /** Local search on giant tours. */
+        LOCAL_SEARCH,
+        /** Split of giant tours into routes. */
+        SPLIT,
+        /** Local search (2-opt by default) on each route of a solution. */
+        ROUTE_LOCAL_SEARCH,
+        /** Moves between routes. */
+        INTER_ROUTE
+    }
+
+    private static final LongAdder[] COUNTERS = new LongAdder[Counter.values().length];
+    private static final LongAdder[] PHASE_NANOS = new LongAdder[Phase.values().length];
+    private static final LongAdder[] PHASE_CALLS = new LongAdder[Phase.values().length];
+
+    static {
+        for (int c = 0; c < COUNTERS.length; c++) {
+            COUNTERS[c] = new LongAdder();
+        }
+        for (int p = 0; p < PHASE_NANOS.length; p++) {
+            PHASE_NANOS[p] = new LongAdder();
+            PHASE_CALLS[p] = new LongAdder();
+        }
+    }
+
+    private static volatile boolean enabled;
+    private static volatile long origin = System.nanoTime();
+
+    // Trace of the best cost: {milliseconds since the origin, cost}
+    private static final List<double[]> TRACE = new ArrayList<>();
+    private static double traceBest = Double.MAX_VALUE;
+
+    private SearchMetrics() {
+    }
+
+    /**
+     * Resets the metrics and starts collecting them; the trace times are measured from now.
+     */
+    public static void enable() {
+        reset();
+        enabled = true;
+    }
+
+    /**
+     * Stops collecting metrics; the values collected so far are kept.
+     */
+    public static void disable() {
+        enabled = false;
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Clears every counter, timer and the trace, and restarts the clock of the trace.
+     */
+    public static synchronized void reset() {
+        for (LongAdder counter : COUNTERS) {
+            counter.reset();
+        }
+        for (int p = 0; p < PHASE_NANOS.length; p++) {
+            PHASE_NANOS[p].reset();
+            PHASE_CALLS[p].reset();
+        }
+        TRACE.clear();
+        traceBest = Double.MAX_VALUE;
+        origin = System.nanoTime();
+    }
+
+    static void add(Counter counter, long count) {
+        if (enabled && count != 0) {
+            COUNTERS[counter.ordinal()].add(count);
+        }
+    }
+
+    static void increment(Counter counter) {
+        if (enabled) {
+            COUNTERS[counter.ordinal()].increment();
+        }
+    }
+
+    /**
+     * @return The start time of a phase, to pass to {@link #stop}, or 0 if metrics are disabled.
+     */
+    static long start() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Records the end of a phase started by {@link #start()}.
+     */
+    static void stop(Phase phase, long start) {
+        if (start != 0 && enabled) {
+            PHASE_NANOS[phase.ordinal()].add(System.nanoTime() - start);
+            PHASE_CALLS[phase.ordinal()].increment();
+        }
+    }
+
+    /**
+     * Adds a point to the trace if the cost improves the best cost reported so far.
+     *
+     * @param cost The cost of a new best solution of a solver.
+     */
+    static void recordBest(double cost) {
+        if (!enabled) {
+            return;
+        }
+        long now = System.nanoTime();
+        synchronized (SearchMetrics.class) {
+            if (cost < traceBest) {
+                traceBest = cost;
+                TRACE.add(new double[]{(now - origin) / 1e6, cost});
+            }
+        }
+    }
+
+    public static long get(Counter counter) {
+        return COUNTERS[counter.ordinal()].sum();
+    }
+
+    /**
+     * @return The total time spent in a phase, in nanoseconds, over all threads.
+     */
+    public static long getNanos(Phase phase) {
+        return PHASE_NANOS[phase.ordinal()].sum();
+    }
+
+    /**
+     * @return The number of times a phase was run.
+     */
+    public static long getCalls(Phase phase) {
+        return PHASE_CALLS[phase.ordinal()].sum();
+    }
+
+    /**
+     * Writes the trace of the best cost as CSV, with the header {@code elapsed_ms,best_cost}.
+     */
+    public static synchronized void writeTrace(Writer out) throws IOException {
+        out.write("elapsed_ms,best_cost\n");
+        for (double[] point : TRACE) {
+            out.write(String.format(Locale.ROOT, "%.3f,%s\n", point[0], point[1]));
+        }
+        out.flush();
+    }
+
+    /**
+     * @return One line per counter, with its rate per second of wall-clock time since the metrics
+     * were enabled, and one line per phase, with its number of runs and its total time.
+     */
+    public static String summary() {
+        double seconds = Math.max(System.nanoTime() - origin, 1) / 1e9;
+        StringBuilder summary = new StringBuilder();
+        for (Counter counter : Counter.values()) {
+            long count = get(counter);
+            summary.append(String.format(Locale.ROOT, "%-26s %12d  (%.1f/s)%n", counter, count, count / seconds));
+        }
+        for (Phase phase : Phase.values()) {
+            summary.append(String.format(Locale.ROOT, "%-26s %12d runs  %.1f ms%n", phase, getCalls(phase), getNanos(phase) / 1e6));
+        }
+        return summary.toString();
+    }
+}
@@ -0,0 +1,84 @@
+package tp.vrp;
+
+import tp.vrp.Data.NeighborLists;
+
+import java.util.function.Supplier;
+
+/**
+ * Settings of the giant tour searches: the local search applied by the iterated local search, the
+ * GRASP and the route improvement, the number of nearest neighbours it examines, and the
+ * acceptance criterion of the iterated local search.
+ * <p>
+ * Options are immutable, so a solver can share its options with all of its worker threads, and
+ * two solvers of the same process can use different options. Each run of the iterated local
+ * search takes a new acceptance criterion from the factory.
+ */
+public final class SearchOptions {
+
+    /**
+     * 2-opt with {@value NeighborLists#DEFAULT_SIZE} neighbours, accepting only tours that are
+     * not worse than the current one.
+     */
+    public static final SearchOptions DEFAULT = new SearchOptions(
+            RouteOptimizationAlgorithms.LocalSearch.TWO_OPT, NeighborLists.DEFAULT_SIZE, Acceptance.betterOnly());
+
+    private final RouteOptimizationAlgorithms.LocalSearch localSearch;
+    private final int neighborListSize;
+    private final Supplier<Acceptance> acceptance;
+
+    /**
+     * @param localSearch      The local search.
+     * @param neighborListSize The number of candidate neighbours per node of the neighbour-list local searches.
+     * @param acceptance       The factory of acceptance criteria, for instance {@link Acceptance#lateAcceptance}.
+     */
+    public SearchOptions(RouteOptimizationAlgorithms.LocalSearch localSearch, int neighborListSize, Supplier<Acceptance> acceptance) {
+        if (localSearch == null) {
+            throw new IllegalArgumentException("The local search must not be null");
+        }
+        if (neighborListSize < 1) {
+            throw new IllegalArgumentException("The neighbour list size must be positive: " + neighborListSize);
+        }
+        if (acceptance == null) {
+            throw new IllegalArgumentException("The acceptance factory must not be null");
+        }
+        this.localSearch = localSearch;
+        this.neighborListSize = neighborListSize;
+        this.acceptance = acceptance;
+    }
+
+    /**
+     * @return Options with the given local search and the other settings of these options.
+     */
+    public SearchOptions withLocalSearch(RouteOptimizationAlgorithms.LocalSearch localSearch) {
+        return new SearchOptions(localSearch, neighborListSize, acceptance);
+    }
+
+    /**
+     * @return Options with the given number of neighbours and the other settings of these options.
+     */
+    public SearchOptions withNeighborListSize(int neighborListSize) {
+        return new SearchOptions(localSearch, neighborListSize, acceptance);
+    }
+
+    /**
+     * @return Options with the given acceptance factory and the other settings of these options.
+     */
+    public SearchOptions withAcceptance(Supplier<Acceptance> acceptance) {
+        return new SearchOptions(localSearch, neighborListSize, acceptance);
+    }
+
+    public RouteOptimizationAlgorithms.LocalSearch getLocalSearch() {
+        return localSearch;
+    }
+
+    public int getNeighborListSize() {
+        return neighborListSize;
+    }
+
+    /**
+     * @return A new acceptance criterion, for one run of the iterated local search.
+     */
+    public Acceptance newAcceptance() {
+        return acceptance.get();
+    }
+}
@@ -0,0 +1,177 @@
+package tp.vrp;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import tp.vrp.Data.Instance;
+
+/**
+ * Java Flight Recorder events marking the phases of a solve, so that JDK Mission Control shows
+ * where each run spends its time: multi-start iterations, constructions, local search descents,
+ * perturbations, splits and improvements of the best solution. They appear under
+ * "VRP / Solver" and carry the instance name; the duration of each phase is the duration of
+ * its event.
+ * <p>
+ * Events are created and ended around each phase and only committed if a recording enables
+ * them. Without a recording, {@link Event#isEnabled()} is false, the JIT compiler removes the
+ * event objects, and fields that cost something to compute, such as tour lengths, are only
+ * computed when the event is enabled. Local search and perturbation events occur on every
+ * ILS iteration; a threshold on them in the recording settings keeps only the slow ones.
+ */
+final class SolverEvents {
+
+    private SolverEvents() {
+    }
+
+    private static String name(Instance instance) {
+        return instance.getName();
+    }
+
+    @Name("tp.vrp.MultiStartIteration")
+    @Label("Multi-Start Iteration")
+    @Category({"VRP", "Solver"})
+    @Description("One start of a multi-start solver: construction, ILS and post-processing of the routes")
+    @StackTrace(false)
+    static final class MultiStartIteration extends Event {
+        @Label("Instance")
+        String instance;
+        @Label("Start")
+        int start;
+        @Label("Cost")
+        @Description("Total distance of the solution of the start")
+        double cost;
+
+        void set(Instance instance, int start, double cost) {
+            this.instance = name(instance);
+            this.start = start;
+            this.cost = cost;
+        }
+    }
+
+    @Name("tp.vrp.Construction")
+    @Label("Construction")
+    @Category({"VRP", "Solver"})
+    @Description("Construction of a giant tour")
+    @StackTrace(false)
+    static final class Construction extends Event {
+        @Label("Instance")
+        String instance;
+        @Label("Method")
+        String method;
+        @Label("Cost")
+        @Description("Length of the constructed tour")
+        double cost;
+
+        void set(Instance instance, String method, double cost) {
+            this.instance = name(instance);
+            this.method = method;
+            this.cost = cost;
+        }
+    }
+
+    @Name("tp.vrp.LocalSearch")
+    @Label("Local Search Descent")
+    @Category({"VRP", "Solver"})
+    @Description("Descent of the selected local search on a giant tour, until a local optimum")
+    @StackTrace(false)
+    static final class LocalSearch extends Event {
+        @Label("Instance")
+        String instance;
+        @Label("Method")
+        String method;
+        @Label("Tour Size")
+        int size;
+        @Label("Initial Cost")
+        double initialCost;
+        @Label("Cost")
+        @Description("Length of the local optimum")
+        double cost;
+
+        void set(Instance instance, String method, int size, double initialCost, double cost) {
+            this.instance = name(instance);
+            this.method = method;
+            this.size = size;
+            this.initialCost = initialCost;
+            this.cost = cost;
+        }
+    }
+
+    @Name("tp.vrp.Perturbation")
+    @Label("Perturbation")
+    @Category({"VRP", "Solver"})
+    @Description("Perturbation of the current tour by the iterated local search")
+    @StackTrace(false)
+    static final class Perturbation extends Event {
+        @Label("Instance")
+        String instance;
+        @Label("Iteration")
+        int iteration;
+        @Label("Strength")
+        @Description("Number of triple shifts")
+        int strength;
+        @Label("Cost")
+        @Description("Length of the perturbed tour")
+        double cost;
+
+        void set(Instance instance, int iteration, int strength, double cost) {
+            this.instance = name(instance);
+            this.iteration = iteration;
+            this.strength = strength;
+            this.cost = cost;
+        }
+    }
+
+    @Name("tp.vrp.Split")
+    @Label("Split")
+    @Category({"VRP", "Solver"})
+    @Description("Optimal split of a giant tour into capacity-feasible routes")
+    @StackTrace(false)
+    static final class Split extends Event {
+        @Label("Instance")
+        String instance;
+        @Label("Customers")
+        int customers;
+        @Label("Cost")
+        @Description("Total distance of the routes")
+        double cost;
+
+        void set(Instance instance, int customers, double cost) {
+            this.instance = name(instance);
+            this.customers = customers;
+            this.cost = cost;
+        }
+    }
+
+    @Name("tp.vrp.Improvement")
+    @Label("Improvement Found")
+    @Category({"VRP", "Solver"})
+    @Description("New best solution of a solver")
+    @StackTrace(false)
+    static final class Improvement extends Event {
+        @Label("Instance")
+        String instance;
+        @Label("Solver")
+        String solver;
+        @Label("Cost")
+        @Description("Total distance of the new best solution")
+        double cost;
+    }
+
+    /**
+     * Commits an instant event for a new best solution, if a recording enables it.
+     *
+     * @param solver The name of the solver, for instance "HGS".
+     */
+    static void improvement(Instance instance, String solver, double cost) {
+        Improvement event = new Improvement();
+        if (event.shouldCommit()) {
+            event.instance = name(instance);
+            event.solver = solver;
+            event.cost = cost;
+            event.commit();
+        }
+    }
+}
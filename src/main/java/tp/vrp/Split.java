@@ -0,0 +1,198 @@
+package tp.vrp;
+
+import tp.vrp.Data.DistanceMatrix;
+import tp.vrp.Data.Instance;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Optimal split of a giant tour into capacity-feasible routes starting and ending at the depot.
+ * <p>
+ * Uses prefix sums of load and distance and a monotone deque (Vidal, 2016): the best
+ * predecessor of each position is the front of a sliding-window minimum, so a giant tour of
+ * n customers is split in O(n). Buffers are reused between calls, so one instance of this
+ * class must not be shared between threads.
+ */
+public class Split {
+
+    private static final double EPSILON = 1e-9;
+
+    private final Instance instance;
+    private final DistanceMatrix distances;
+
+    // Position k (1..n) refers to the k-th customer of the giant tour
+    private double[] potential;
+    private int[] predecessor;
+    private double[] sumLoad;
+    private double[] sumDistance;
+    private double[] fromDepot;
+    private int[] deque;
+
+    public Split(Instance instance) {
+        this.instance = instance;
+        this.distances = instance.getDistances();
+        allocate(instance.size());
+    }
+
+    private void allocate(int customers) {
+        potential = new double[customers + 1];
+        predecessor = new int[customers + 1];
+        sumLoad = new double[customers + 1];
+        sumDistance = new double[customers + 2];
+        fromDepot = new double[customers + 2];
+        deque = new int[customers + 1];
+    }
+
+    /**
+     * Computes the cost of the best split of a giant tour, without building the routes.
+     *
+     * @param tour The customer indices of the giant tour, without the depot.
+     * @param size The number of valid entries in {@code tour}.
+     * @return The total distance of the best set of routes.
+     */
+    public double evaluate(int[] tour, int size) {
+        run(tour, 0, size);
+        return potential[size];
+    }
+
+    /**
+     * Computes the cost of the best split of a giant tour, without building the routes.
+     *
+     * @param giantTour The giant tour, the depot first.
+     * @return The total distance of the best set of routes.
+     */
+    public double evaluate(Tour giantTour) {
+        int size = giantTour.size() - 1;
+        run(giantTour.nodes(), 1, size);
+        return potential[size];
+    }
+
+    /**
+     * Splits a giant tour into routes.
+     *
+     * @param tour The customer indices of the giant tour, without the depot.
+     * @param size The number of valid entries in {@code tour}.
+     * @return The routes, as lists of node IDs starting and ending at the depot.
+     */
+    public List<List<Integer>> split(int[] tour, int size) {
+        return split(tour, 0, size);
+    }
+
+    /**
+     * Splits a giant tour into routes.
+     *
+     * @param giantTour The giant tour, the depot first.
+     * @return The routes, as lists of node IDs starting and ending at the depot.
+     */
+    public List<List<Integer>> split(Tour giantTour) {
+        return split(giantTour.nodes(), 1, giantTour.size() - 1);
+    }
+
+    private List<List<Integer>> split(int[] tour, int from, int size) {
+        run(tour, from, size);
+
+        int depotId = instance.getDepotId();
+        List<List<Integer>> routes = new ArrayList<>();
+        for (int end = size; end > 0; end = predecessor[end]) {
+            List<Integer> route = new ArrayList<>(end - predecessor[end] + 2);
+            route.add(depotId);
+            for (int k = predecessor[end] + 1; k <= end; k++) {
+                route.add(instance.getIdOf(tour[from + k - 1]));
+            }
+            route.add(depotId);
+            routes.add(route);
+        }
+        Collections.reverse(routes);
+        return routes;
+    }
+
+    /**
+     * Splits a giant tour into route boundaries.
+     *
+     * @param tour The customer indices of the giant tour, without the depot.
+     * @param size The number of valid entries in {@code tour}.
+     * @param ends Output buffer receiving, for each route, the position in {@code tour} just after its last customer.
+     * @return The number of routes.
+     */
+    public int split(int[] tour, int size, int[] ends) {
+        run(tour, 0, size);
+
+        int routes = 0;
+        for (int end = size; end > 0; end = predecessor[end]) {
+            routes++;
+        }
+        int r = routes;
+        for (int end = size; end > 0; end = predecessor[end]) {
+            ends[--r] = end;
+        }
+        return routes;
+    }
+
+    /**
+     * Computes the potentials and predecessors of the customers {@code tour[from .. from + size)}.
+     */
+    private void run(int[] tour, int from, int size) {
+        SolverEvents.Split event = new SolverEvents.Split();
+        event.begin();
+        long start = SearchMetrics.start();
+        if (size + 1 > potential.length) {
+            allocate(size);
+        }
+        int depot = instance.getDepotIndex();
+        double capacity = instance.getCapacity();
+
+        sumLoad[0] = 0;
+        sumDistance[1] = 0;
+        for (int k = 1; k <= size; k++) {
+            int customer = tour[from + k - 1];
+            double demand = instance.getDemand(customer);
+            if (demand > capacity + EPSILON) {
+                throw new IllegalArgumentException("The demand of node " + instance.getIdOf(customer)
+                        + " exceeds the vehicle capacity");
+            }
+            sumLoad[k] = sumLoad[k - 1] + demand;
+            fromDepot[k] = distances.get(depot, customer);
+            if (k < size) {
+                sumDistance[k + 1] = sumDistance[k] + distances.get(customer, tour[from + k]);
+            }
+        }
+
+        potential[0] = 0;
+        int head = 0;
+        int tail = 0;
+        deque[tail++] = 0;
+        for (int t = 1; t <= size; t++) {
+            // Drop the predecessors whose route up to t would exceed the capacity
+            while (sumLoad[t] - sumLoad[deque[head]] > capacity + EPSILON) {
+                head++;
+            }
+            int best = deque[head];
+            potential[t] = key(best) + sumDistance[t] + fromDepot[t];
+            predecessor[t] = best;
+
+            if (t < size) {
+                // t stays feasible longer than the entries it beats, which can be dropped
+                double key = key(t);
+                while (tail > head && key(deque[tail - 1]) >= key) {
+                    tail--;
+                }
+                deque[tail++] = t;
+            }
+        }
+        SearchMetrics.stop(SearchMetrics.Phase.SPLIT, start);
+        event.end();
+        if (event.shouldCommit()) {
+            event.set(instance, size, potential[size]);
+            event.commit();
+        }
+    }
+
+    /**
+     * The part of the cost of a route starting right after position i that does not depend on where it ends.
+     */
+    private double key(int i) {
+        return potential[i] + fromDepot[i + 1] - sumDistance[i + 1];
+    }
+}
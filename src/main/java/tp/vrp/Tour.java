@@ -0,0 +1,215 @@
+package tp.vrp;
+
+import tp.vrp.Data.DistanceMatrix;
+import tp.vrp.Data.Instance;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Closed tour over a subset of the nodes of an instance, stored as an {@code int[]} of node
+ * indices together with the position of every node ({@code -1} for nodes outside the tour).
+ * <p>
+ * Operators modify a tour in place and share its scratch buffers, so a search can run for any
+ * number of iterations without allocating. Conversion to lists of node IDs only happens at the
+ * public API boundary, through {@link #fromIds} and {@link #toIds}. Not thread-safe.
+ */
+public final class Tour {
+
+    private final Instance instance;
+    private final int[] nodes;
+    private final int[] position;
+    private int size;
+
+    // Scratch buffers lent to the operators working on this tour
+    final int[] scratch;
+    final boolean[] marks;
+    // Endpoints of the edges exchanged by the last improving 2-opt move
+    final int[] ends = new int[4];
+    // Or-opt search bound to this tour, created on first use and reused by every descent
+    OrOpt orOpt;
+
+    /**
+     * Creates an empty tour able to hold every node of the instance.
+     *
+     * @param instance The instance the tour belongs to.
+     */
+    public Tour(Instance instance) {
+        this.instance = instance;
+        int n = instance.size();
+        this.nodes = new int[n];
+        this.position = new int[n];
+        this.scratch = new int[n];
+        this.marks = new boolean[n];
+        Arrays.fill(position, -1);
+    }
+
+    /**
+     * Builds a tour from a list of node IDs.
+     *
+     * @param ids      The node IDs, in tour order.
+     * @param instance The instance the nodes belong to.
+     * @return The tour.
+     */
+    public static Tour fromIds(List<Integer> ids, Instance instance) {
+        Tour tour = new Tour(instance);
+        for (int id : ids) {
+            tour.add(instance.getIndexOf(id));
+        }
+        return tour;
+    }
+
+    /**
+     * @return The node IDs of the tour, in tour order.
+     */
+    public List<Integer> toIds() {
+        List<Integer> ids = new ArrayList<>(size);
+        for (int p = 0; p < size; p++) {
+            ids.add(instance.getIdOf(nodes[p]));
+        }
+        return ids;
+    }
+
+    public Instance getInstance() {
+        return instance;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @param p A position in the tour.
+     * @return The index of the node at that position.
+     */
+    public int get(int p) {
+        return nodes[p];
+    }
+
+    /**
+     * @param node A node index.
+     * @return The position of the node in the tour, or -1 if it is not in the tour.
+     */
+    public int positionOf(int node) {
+        return position[node];
+    }
+
+    /**
+     * Gives operators direct access to the node array; entries from {@link #size()} on are meaningless.
+     * Callers that reorder it must call {@link #reindex()} afterwards.
+     */
+    int[] nodes() {
+        return nodes;
+    }
+
+    /**
+     * Gives operators direct access to the position index; it must be kept consistent with {@link #nodes()}.
+     */
+    int[] positions() {
+        return position;
+    }
+
+    /**
+     * Appends a node at the end of the tour.
+     *
+     * @param node The index of a node that is not already in the tour.
+     */
+    public void add(int node) {
+        nodes[size] = node;
+        position[node] = size++;
+    }
+
+    /**
+     * Removes every node from the tour.
+     */
+    public void clear() {
+        for (int p = 0; p < size; p++) {
+            position[nodes[p]] = -1;
+        }
+        size = 0;
+    }
+
+    /**
+     * Makes this tour a copy of another tour of the same instance.
+     */
+    public void copyFrom(Tour other) {
+        clear();
+        System.arraycopy(other.nodes, 0, nodes, 0, other.size);
+        size = other.size;
+        reindex();
+    }
+
+    /**
+     * Places a node at a position, in place of the node currently there, which leaves the tour.
+     */
+    public void set(int p, int node) {
+        position[nodes[p]] = -1;
+        nodes[p] = node;
+        position[node] = p;
+    }
+
+    /**
+     * Exchanges the nodes at two positions.
+     */
+    public void swap(int p, int q) {
+        int u = nodes[p];
+        int v = nodes[q];
+        nodes[p] = v;
+        position[v] = p;
+        nodes[q] = u;
+        position[u] = q;
+    }
+
+    /**
+     * Reverses the order of the nodes between positions i and k (inclusive).
+     */
+    public void reverse(int i, int k) {
+        while (i < k) {
+            swap(i++, k--);
+        }
+    }
+
+    /**
+     * Rotates the tour so that a node is at position 0, keeping the cyclic order.
+     *
+     * @param node The index of a node of the tour.
+     */
+    public void rotateToFront(int node) {
+        int shift = position[node];
+        if (shift <= 0) {
+            return;
+        }
+        for (int p = 0; p < size; p++) {
+            scratch[p] = nodes[p + shift < size ? p + shift : p + shift - size];
+        }
+        System.arraycopy(scratch, 0, nodes, 0, size);
+        reindex();
+    }
+
+    /**
+     * Rebuilds the position index after the node array was modified directly.
+     */
+    void reindex() {
+        for (int p = 0; p < size; p++) {
+            position[nodes[p]] = p;
+        }
+    }
+
+    /**
+     * Computes the length of the closed tour.
+     *
+     * @param distances The distance matrix of the instance.
+     * @return The total distance, the edge back to the first node included.
+     */
+    public double length(DistanceMatrix distances) {
+        if (size < 2) {
+            return 0;
+        }
+        double length = distances.get(nodes[size - 1], nodes[0]);
+        for (int p = 1; p < size; p++) {
+            length += distances.get(nodes[p - 1], nodes[p]);
+        }
+        return length;
+    }
+}
@@ -0,0 +1,353 @@
+package tp.vrp;
+
+import tp.vrp.Data.DistanceMatrix;
+import tp.vrp.Data.NeighborLists;
+
+import java.util.Arrays;
+
+/**
+ * In-place 2-opt local search on a closed tour stored as an {@code int[]} of node indices.
+ * The gain of each move is computed from the four edges it touches, so a pass over all
+ * (i, k) pairs costs O(n²) and allocates nothing. The node at position 0 never moves.
+ * <p>
+ * For long tours, {@link #optimize(int[], int, DistanceMatrix, NeighborLists, int[], int)} only
+ * tries moves that create an edge towards one of the k nearest neighbours of a node, and uses
+ * don't-look bits so that only nodes whose surroundings changed are examined again. The
+ * {@link Tour} overloads reuse the position index and scratch buffers of the tour.
+ */
+public final class TwoOpt {
+
+    /**
+     * Selects which improving move is applied during a pass.
+     */
+    public enum Strategy {
+        /** Apply every improving move as soon as it is found. */
+        FIRST_IMPROVEMENT,
+        /** Scan the whole neighbourhood and apply only the best move of the pass. */
+        BEST_IMPROVEMENT
+    }
+
+    static final double EPSILON = 1e-9;
+
+    private TwoOpt() {
+    }
+
+    /**
+     * Applies 2-opt moves until the tour is a local optimum.
+     *
+     * @param tour      The node indices of the tour, modified in place.
+     * @param size      The number of valid entries in {@code tour}.
+     * @param distances The distance matrix of the instance.
+     * @param strategy  The move selection strategy.
+     * @return The total length removed from the tour.
+     */
+    public static double optimize(int[] tour, int size, DistanceMatrix distances, Strategy strategy) {
+        if (size < 4) {
+            return 0;
+        }
+        double totalGain = 0;
+        long evaluated = 0;
+        long moves = 0;
+        boolean improvement = true;
+        while (improvement) {
+            improvement = false;
+            double bestDelta = -EPSILON;
+            int bestI = -1;
+            int bestK = -1;
+
+            for (int i = 1; i < size - 1; i++) {
+                int a = tour[i - 1];
+                int b = tour[i];
+                double ab = distances.get(a, b);
+                // Reversing tour[1..size-1] gives back the same cycle
+                int lastK = i == 1 ? size - 2 : size - 1;
+                evaluated += lastK - i;
+                for (int k = i + 1; k <= lastK; k++) {
+                    int c = tour[k];
+                    int e = tour[k + 1 == size ? 0 : k + 1];
+                    double delta = distances.get(a, c) + distances.get(b, e) - ab - distances.get(c, e);
+                    if (delta < bestDelta) {
+                        if (strategy == Strategy.FIRST_IMPROVEMENT) {
+                            reverse(tour, i, k);
+                            totalGain -= delta;
+                            moves++;
+                            improvement = true;
+                            b = tour[i];
+                            ab = distances.get(a, b);
+                        } else {
+                            bestDelta = delta;
+                            bestI = i;
+                            bestK = k;
+                        }
+                    }
+                }
+            }
+
+            if (bestI != -1) {
+                reverse(tour, bestI, bestK);
+                totalGain -= bestDelta;
+                moves++;
+                improvement = true;
+            }
+        }
+        SearchMetrics.add(SearchMetrics.Counter.TWO_OPT_PAIRS_EVALUATED, evaluated);
+        SearchMetrics.add(SearchMetrics.Counter.TWO_OPT_MOVES, moves);
+        return totalGain;
+    }
+
+    /**
+     * Applies 2-opt moves until the tour is a local optimum.
+     *
+     * @param tour      The tour, modified in place.
+     * @param distances The distance matrix of the instance.
+     * @param strategy  The move selection strategy.
+     * @return The total length removed from the tour.
+     */
+    public static double optimize(Tour tour, DistanceMatrix distances, Strategy strategy) {
+        double gain = optimize(tour.nodes(), tour.size(), distances, strategy);
+        tour.reindex();
+        return gain;
+    }
+
+    /**
+     * Applies neighbour-list 2-opt moves with don't-look bits until no active node remains.
+     * The tour may hold only a subset of the instance nodes; neighbours outside the tour are ignored.
+     *
+     * @param tour        The node indices of the tour, modified in place.
+     * @param size        The number of valid entries in {@code tour}.
+     * @param distances   The distance matrix of the instance.
+     * @param neighbors   The candidate lists of the instance.
+     * @param active      The nodes to examine first, or {@code null} to examine every node of the tour.
+     * @param activeCount The number of valid entries in {@code active}.
+     * @return The total length removed from the tour.
+     */
+    public static double optimize(int[] tour, int size, DistanceMatrix distances, NeighborLists neighbors,
+                                  int[] active, int activeCount) {
+        if (size < 4) {
+            return 0;
+        }
+        int n = distances.size();
+        int[] pos = new int[n];
+        Arrays.fill(pos, -1);
+        for (int p = 0; p < size; p++) {
+            pos[tour[p]] = p;
+        }
+        return optimize(tour, pos, size, distances, neighbors, active, activeCount, new int[size], new boolean[n], new int[4]);
+    }
+
+    /**
+     * Applies neighbour-list 2-opt moves with don't-look bits, using the position index and the
+     * scratch buffers of the tour, so that no memory is allocated.
+     *
+     * @param tour        The tour, modified in place; its first node stays at position 0.
+     * @param distances   The distance matrix of the instance.
+     * @param neighbors   The candidate lists of the instance.
+     * @param active      The nodes to examine first, or {@code null} to examine every node of the tour.
+     * @param activeCount The number of valid entries in {@code active}.
+     * @return The total length removed from the tour.
+     */
+    public static double optimize(Tour tour, DistanceMatrix distances, NeighborLists neighbors,
+                                  int[] active, int activeCount) {
+        if (tour.size() < 4) {
+            return 0;
+        }
+        return optimize(tour.nodes(), tour.positions(), tour.size(), distances, neighbors, active, activeCount,
+                tour.scratch, tour.marks, tour.ends);
+    }
+
+    /**
+     * @param pos    The position of every node in {@code tour}, -1 for nodes outside; kept up to date.
+     * @param queue  Buffer of at least {@code size} entries for the nodes whose don't-look bit is off.
+     * @param queued Flags of the queued nodes, all false on entry; they are all false again on return.
+     * @param ends   Buffer of 4 entries receiving the endpoints of each applied move.
+     */
+    private static double optimize(int[] tour, int[] pos, int size, DistanceMatrix distances, NeighborLists neighbors,
+                                   int[] active, int activeCount, int[] queue, boolean[] queued, int[] ends) {
+        // FIFO of nodes whose don't-look bit is off
+        int head = 0;
+        int count = 0;
+        if (active == null) {
+            for (int p = 0; p < size; p++) {
+                queue[count++] = tour[p];
+                queued[tour[p]] = true;
+            }
+        } else {
+            for (int q = 0; q < activeCount; q++) {
+                int node = active[q];
+                if (pos[node] >= 0 && !queued[node]) {
+                    queue[count++] = node;
+                    queued[node] = true;
+                }
+            }
+        }
+
+        int first = tour[0];
+        double totalGain = 0;
+        long scanned = 0;
+        long moves = 0;
+        while (count > 0) {
+            int a = queue[head];
+            head = head + 1 == queue.length ? 0 : head + 1;
+            count--;
+            queued[a] = false;
+
+            scanned++;
+            double delta = improve(tour, pos, size, distances, neighbors, a, ends);
+            if (delta < 0) {
+                totalGain -= delta;
+                moves++;
+                for (int node : ends) {
+                    count = enqueue(queue, queued, head, count, node);
+                }
+            }
+        }
+
+        rotateToFront(tour, pos, size, first, queue);
+        SearchMetrics.add(SearchMetrics.Counter.TWO_OPT_NODES_SCANNED, scanned);
+        SearchMetrics.add(SearchMetrics.Counter.TWO_OPT_MOVES, moves);
+        return totalGain;
+    }
+
+    /**
+     * Applies the first improving neighbour-list 2-opt move that creates an edge from node a.
+     *
+     * @param pos  The position of every node in {@code tour}, -1 for nodes outside; kept up to date.
+     * @param a    The node whose candidate edges are tried.
+     * @param ends Receives the four endpoints of the exchanged edges when a move is applied.
+     * @return The (negative) length change of the applied move, or 0 if no improving move was found.
+     */
+    static double improve(int[] tour, int[] pos, int size, DistanceMatrix distances, NeighborLists neighbors,
+                          int a, int[] ends) {
+        int k = neighbors.getK();
+        for (int direction = 0; direction < 2; direction++) {
+            boolean forward = direction == 0;
+            int pa = pos[a];
+            int b = tour[forward ? next(pa, size) : previous(pa, size)];
+            double ab = distances.get(a, b);
+
+            for (int r = 0; r < k; r++) {
+                int c = neighbors.get(a, r);
+                int pc = pos[c];
+                if (pc < 0) {
+                    continue;
+                }
+                double ac = distances.get(a, c);
+                if (ac >= ab) {
+                    break; // Neighbours are sorted: no further gain possible
+                }
+                int e = tour[forward ? next(pc, size) : previous(pc, size)];
+                if (c == b || e == a) {
+                    continue;
+                }
+                double delta = ac + distances.get(b, e) - ab - distances.get(c, e);
+                if (delta < -EPSILON) {
+                    // a b ... c e  ->  a c ... b e, in either direction
+                    exchange(tour, pos, size, a, b, c);
+                    ends[0] = a;
+                    ends[1] = b;
+                    ends[2] = c;
+                    ends[3] = e;
+                    return delta;
+                }
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Replaces the edges (a, b) and (c, d) by (a, c) and (b, d), where b and d are the neighbours
+     * of a and c on the same side. Whether b follows or precedes a is read from the positions,
+     * so successive calls remain valid even after a reversal flipped the orientation of the tour.
+     */
+    static void exchange(int[] tour, int[] pos, int size, int a, int b, int c) {
+        if (pos[b] == next(pos[a], size)) {
+            // a b ... c d  ->  a c ... b d
+            reverseCyclic(tour, pos, size, pos[b], pos[c]);
+        } else {
+            // d c ... b a  ->  d b ... c a
+            reverseCyclic(tour, pos, size, pos[c], pos[b]);
+        }
+    }
+
+    /**
+     * Switches off the don't-look bit of a node by appending it to the circular queue.
+     *
+     * @return The new number of queued nodes.
+     */
+    static int enqueue(int[] queue, boolean[] queued, int head, int count, int node) {
+        if (queued[node]) {
+            return count;
+        }
+        int tail = head + count;
+        queue[tail >= queue.length ? tail - queue.length : tail] = node;
+        queued[node] = true;
+        return count + 1;
+    }
+
+    static int next(int p, int size) {
+        return p + 1 == size ? 0 : p + 1;
+    }
+
+    static int previous(int p, int size) {
+        return p == 0 ? size - 1 : p - 1;
+    }
+
+    /**
+     * Reverses the cyclic path going forward from position i to position j. When that path is
+     * longer than half the tour, the complementary path is reversed instead, which yields the
+     * same cycle in the opposite orientation.
+     */
+    static void reverseCyclic(int[] tour, int[] pos, int size, int i, int j) {
+        int length = j - i;
+        if (length < 0) {
+            length += size;
+        }
+        length++;
+        if (2 * length > size) {
+            int tmp = i;
+            i = next(j, size);
+            j = previous(tmp, size);
+            length = size - length;
+        }
+        for (int swaps = length / 2; swaps > 0; swaps--) {
+            int u = tour[i];
+            int v = tour[j];
+            tour[i] = v;
+            pos[v] = i;
+            tour[j] = u;
+            pos[u] = j;
+            i = next(i, size);
+            j = previous(j, size);
+        }
+    }
+
+    /**
+     * Rotates the tour so that {@code node} is back at position 0, using {@code buffer} as scratch space.
+     */
+    static void rotateToFront(int[] tour, int[] pos, int size, int node, int[] buffer) {
+        int shift = pos[node];
+        if (shift == 0) {
+            return;
+        }
+        for (int p = 0; p < size; p++) {
+            buffer[p] = tour[p + shift < size ? p + shift : p + shift - size];
+        }
+        System.arraycopy(buffer, 0, tour, 0, size);
+        for (int p = 0; p < size; p++) {
+            pos[tour[p]] = p;
+        }
+    }
+
+    /**
+     * Reverses the order of the nodes between positions i and k (inclusive).
+     */
+    static void reverse(int[] tour, int i, int k) {
+        while (i < k) {
+            int tmp = tour[i];
+            tour[i] = tour[k];
+            tour[k] = tmp;
+            i++;
+            k--;
+        }
+    }
+}
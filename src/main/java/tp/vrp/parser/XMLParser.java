@@ -1,152 +1,344 @@
 package tp.vrp.parser;
 
 
+import tp.vrp.Data.Instance;
 import tp.vrp.Data.Node;
 import tp.vrp.Data.Request;
 import tp.vrp.Data.Vehicule;
 
-import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.Location;
 import javax.xml.stream.XMLInputFactory;
-import javax.xml.stream.events.Attribute;
-import javax.xml.stream.events.StartElement;
-import javax.xml.stream.events.XMLEvent;
-import java.io.FileReader;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
-import java.util.Iterator;
+import java.util.Arrays;
 import java.util.List;
 
+/**
+ * Reads an instance file with the {@link XMLStreamReader} cursor API over a buffered stream.
+ * <p>
+ * Nodes and requests go straight into primitive arrays, pre-sized from the file size and doubled
+ * when full, so no object is created per node and {@link #getInstance()} only copies the arrays.
+ * The {@link Node}, {@link Request} and {@link Vehicule} lists are built on demand, for the code
+ * that still needs them. A malformed file raises an {@link IllegalArgumentException} giving the
+ * file, line and column of the problem; a file that cannot be read raises an
+ * {@link UncheckedIOException}.
+ */
 public class XMLParser {
+    // Approximate size in bytes of one node and its request in the files, to pre-size the arrays
+    private static final int BYTES_PER_NODE = 200;
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private String fileName;
+    private String instanceName;
+
+    private int nodeCount;
+    private int[] nodeIds;
+    private int[] nodeTypes;
+    private double[] nodeX;
+    private double[] nodeY;
+
+    private int requestCount;
+    private int[] requestIds;
+    private int[] requestNodes;
+    private double[] requestQuantities;
+
+    private final List<Vehicule> vehiculeList;
+
     private List<Node> nodeList;
     private List<Request> requestList;
-    private List<Vehicule> vehiculeList;
+    private Instance instance;
 
     public XMLParser() {
-        this.nodeList = new ArrayList<>();
-        this.requestList = new ArrayList<>();
         this.vehiculeList = new ArrayList<>();
+        allocate(16);
     }
 
     public void parseXMLFile(String filePath) {
-        try {
+        parseXMLFile(Path.of(filePath));
+    }
+
+    /**
+     * Parses an instance file. The results of a previous parse are discarded.
+     *
+     * @param file The instance file.
+     * @throws IllegalArgumentException If the file is not a valid instance.
+     * @throws UncheckedIOException     If the file cannot be read.
+     */
+    public void parseXMLFile(Path file) {
+        fileName = file.toString();
+        instanceName = null;
+        nodeCount = 0;
+        requestCount = 0;
+        vehiculeList.clear();
+        nodeList = null;
+        requestList = null;
+        instance = null;
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(file), BUFFER_SIZE)) {
+            allocate((int) Math.min(Files.size(file) / BYTES_PER_NODE + 16, Integer.MAX_VALUE - 8));
             XMLInputFactory factory = XMLInputFactory.newInstance();
-            XMLEventReader eventReader = factory.createXMLEventReader(new FileReader(filePath));
-
-
-            Request currentRequest = null;
-            Node currentNode = null;
-            Vehicule currentVehicle = null;
-
-            while (eventReader.hasNext()) {
-                XMLEvent event = eventReader.nextEvent();
-
-                if (event.isStartElement()) {
-                    StartElement startElement = event.asStartElement();
-                    String elementName = startElement.getName().getLocalPart();
-
-                    switch (elementName) {
-                        case "node":
-                            currentNode = new Node();
-                            Iterator<Attribute> attributes2 = startElement.getAttributes();
-                            while (attributes2.hasNext()) {
-                                Attribute attribute = attributes2.next();
-                                String attrName = attribute.getName().getLocalPart();
-                                String attrValue = attribute.getValue();
-                                if ("id".equals(attrName)) {
-                                    currentNode.setId(Integer.parseInt(attrValue));
-                                } else if ("type".equals(attrName)) {
-                                    currentNode.setType(Integer.parseInt(attrValue));
-                                }
-                            }
-
-                            break;
-                        case "cx":
-                            event = eventReader.nextEvent();
-                            if (currentNode != null) {
-                                currentNode.setLongitude(Double.parseDouble(event.asCharacters().getData()));
-                            }
-                            break;
-                        case "cy":
-                            event = eventReader.nextEvent();
-                            if (nodeList.size() == 0)
-                            {//nodeList.add(0,currentNode);
-                            }
-                            if (currentNode != null) {
-                                currentNode.setLatitude(Double.parseDouble(event.asCharacters().getData()));
-                                nodeList.add(currentNode);
-                            }
-                            break;
-
-                        case "request":
-                            currentRequest = new Request();
-                            Iterator<Attribute> attributes = startElement.getAttributes();
-                            while (attributes.hasNext()) {
-                                Attribute attribute = attributes.next();
-                                String attrName = attribute.getName().getLocalPart();
-                                String attrValue = attribute.getValue();
-                                if ("id".equals(attrName)) {
-                                    currentRequest.setId(Integer.parseInt(attrValue));
-                                } else if ("node".equals(attrName)) {
-                                    currentRequest.setNode(Integer.parseInt(attrValue));
-                                }
-                            }
-                            break;
-                        case "quantity":
-                            event = eventReader.nextEvent();
-
-
-                            if (currentRequest != null) {
-                                currentRequest.setQuantity(Double.parseDouble(event.asCharacters().getData()));
-                                requestList.add(currentRequest.getId(), currentRequest);
-                            }
-                            break;
-                        case "vehicle_profile":
-                            currentVehicle = new Vehicule();
-                            Iterator<Attribute> attributes3 = startElement.getAttributes();
-                            while (attributes3.hasNext()) {
-                                Attribute attribute = attributes3.next();
-                                String attrName = attribute.getName().getLocalPart();
-                                String attrValue = attribute.getValue();
-                                if ("type".equals(attrName)) {
-                                    currentVehicle.setVehicleProfile(Integer.parseInt(attrValue));
-                                }
-                            }
-                            break;
-                        case "departure_node":
-                            event = eventReader.nextEvent();
-                            if (currentVehicle != null) {
-                                currentVehicle.setDepartureNode(Integer.parseInt(event.asCharacters().getData()));
-                            }
-                            break;
-                        case "arrival_node":
-                            event = eventReader.nextEvent();
-                            if (currentVehicle != null) {
-                                currentVehicle.setArrivalNode(Integer.parseInt(event.asCharacters().getData()));
-                            }
-                            break;
-                        case "capacity":
-                            event = eventReader.nextEvent();
-                            if (currentVehicle != null) {
-                                currentVehicle.setCapacityInitial((int) Double.parseDouble(event.asCharacters().getData()));
-                                vehiculeList.add(currentVehicle);
-                            }
-                            break;
+            factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+            factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+            XMLStreamReader reader = factory.createXMLStreamReader(in);
+            try {
+                read(reader);
+            } finally {
+                reader.close();
+            }
+        } catch (XMLStreamException e) {
+            throw new IllegalArgumentException(at(e.getLocation()) + e.getMessage(), e);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read " + fileName, e);
+        }
+    }
+
+    private void read(XMLStreamReader reader) throws XMLStreamException {
+        // Index of the node or request whose child elements are being read, -1 outside of one
+        int currentNode = -1;
+        int currentRequest = -1;
+        Vehicule currentVehicle = null;
 
+        while (reader.hasNext()) {
+            if (reader.next() != XMLStreamConstants.START_ELEMENT) {
+                continue;
+            }
+            switch (reader.getLocalName()) {
+                case "name":
+                    instanceName = reader.getElementText().trim();
+                    break;
+                case "node":
+                    if (nodeCount == nodeIds.length) {
+                        growNodes();
                     }
-                }
+                    currentNode = nodeCount++;
+                    nodeIds[currentNode] = intAttribute(reader, "id");
+                    nodeTypes[currentNode] = intAttribute(reader, "type");
+                    nodeX[currentNode] = Double.NaN;
+                    nodeY[currentNode] = Double.NaN;
+                    break;
+                case "cx":
+                    nodeX[requireOpen(reader, currentNode, "node")] = doubleText(reader);
+                    break;
+                case "cy":
+                    nodeY[requireOpen(reader, currentNode, "node")] = doubleText(reader);
+                    break;
+                case "request":
+                    if (requestCount == requestIds.length) {
+                        growRequests();
+                    }
+                    currentRequest = requestCount++;
+                    requestIds[currentRequest] = intAttribute(reader, "id");
+                    requestNodes[currentRequest] = intAttribute(reader, "node");
+                    requestQuantities[currentRequest] = Double.NaN;
+                    break;
+                case "quantity":
+                    requestQuantities[requireOpen(reader, currentRequest, "request")] = doubleText(reader);
+                    break;
+                case "vehicle_profile":
+                    currentVehicle = new Vehicule();
+                    String type = reader.getAttributeValue(null, "type");
+                    if (type != null) {
+                        currentVehicle.setVehicleProfile(parseInt(reader, type, "type"));
+                    }
+                    vehiculeList.add(currentVehicle);
+                    break;
+                case "departure_node":
+                    requireOpen(reader, currentVehicle, "vehicle_profile").setDepartureNode(intText(reader));
+                    break;
+                case "arrival_node":
+                    requireOpen(reader, currentVehicle, "vehicle_profile").setArrivalNode(intText(reader));
+                    break;
+                case "capacity":
+                    requireOpen(reader, currentVehicle, "vehicle_profile").setCapacityInitial((int) doubleText(reader));
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        for (int i = 0; i < nodeCount; i++) {
+            if (Double.isNaN(nodeX[i]) || Double.isNaN(nodeY[i])) {
+                throw new IllegalArgumentException(fileName + ": node " + nodeIds[i] + " has no <cx> or <cy>");
+            }
+        }
+        for (int r = 0; r < requestCount; r++) {
+            if (Double.isNaN(requestQuantities[r])) {
+                throw new IllegalArgumentException(fileName + ": request " + requestIds[r] + " has no <quantity>");
             }
-        } catch (Exception e) {
-            e.printStackTrace();
         }
     }
 
+    private void allocate(int capacity) {
+        nodeIds = new int[capacity];
+        nodeTypes = new int[capacity];
+        nodeX = new double[capacity];
+        nodeY = new double[capacity];
+        requestIds = new int[capacity];
+        requestNodes = new int[capacity];
+        requestQuantities = new double[capacity];
+    }
+
+    private void growNodes() {
+        int capacity = nodeIds.length * 2;
+        nodeIds = Arrays.copyOf(nodeIds, capacity);
+        nodeTypes = Arrays.copyOf(nodeTypes, capacity);
+        nodeX = Arrays.copyOf(nodeX, capacity);
+        nodeY = Arrays.copyOf(nodeY, capacity);
+    }
+
+    private void growRequests() {
+        int capacity = requestIds.length * 2;
+        requestIds = Arrays.copyOf(requestIds, capacity);
+        requestNodes = Arrays.copyOf(requestNodes, capacity);
+        requestQuantities = Arrays.copyOf(requestQuantities, capacity);
+    }
+
+    private int requireOpen(XMLStreamReader reader, int current, String parent) {
+        if (current < 0) {
+            throw outside(reader, parent);
+        }
+        return current;
+    }
+
+    private Vehicule requireOpen(XMLStreamReader reader, Vehicule current, String parent) {
+        if (current == null) {
+            throw outside(reader, parent);
+        }
+        return current;
+    }
+
+    private IllegalArgumentException outside(XMLStreamReader reader, String parent) {
+        return new IllegalArgumentException(at(reader.getLocation()) + "<" + reader.getLocalName() + "> outside of a <" + parent + ">");
+    }
+
+    private int intAttribute(XMLStreamReader reader, String name) {
+        String value = reader.getAttributeValue(null, name);
+        if (value == null) {
+            throw new IllegalArgumentException(at(reader.getLocation()) + "<" + reader.getLocalName() + "> has no " + name + " attribute");
+        }
+        return parseInt(reader, value, name);
+    }
+
+    private int parseInt(XMLStreamReader reader, String value, String name) {
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(at(reader.getLocation()) + "invalid integer for " + name + ": '" + value + "'", e);
+        }
+    }
+
+    private int intText(XMLStreamReader reader) throws XMLStreamException {
+        String text = reader.getElementText();
+        try {
+            return Integer.parseInt(text.trim());
+        } catch (NumberFormatException e) {
+            // The reader is on the end tag, which shares the line of the value in the files
+            throw new IllegalArgumentException(at(reader.getLocation()) + "invalid integer in <" + reader.getLocalName() + ">: '" + text.trim() + "'", e);
+        }
+    }
+
+    private double doubleText(XMLStreamReader reader) throws XMLStreamException {
+        String text = reader.getElementText();
+        try {
+            return Double.parseDouble(text);
+        } catch (NumberFormatException e) {
+            // The reader is on the end tag, which shares the line of the value in the files
+            throw new IllegalArgumentException(at(reader.getLocation()) + "invalid number in <" + reader.getLocalName() + ">: '" + text.trim() + "'", e);
+        }
+    }
+
+    private String at(Location location) {
+        if (location == null) {
+            return fileName + ": ";
+        }
+        return fileName + ":" + location.getLineNumber() + ":" + location.getColumnNumber() + ": ";
+    }
+
+    /**
+     * @return The number of parsed nodes, depot included; no object is built.
+     */
+    public int getNodeCount() {
+        return nodeCount;
+    }
+
+    /**
+     * @return The parsed nodes, in the order of the file; the list is built on the first call.
+     */
     public List<Node> getNodeList() {
+        if (nodeList == null) {
+            nodeList = new ArrayList<>(nodeCount);
+            for (int i = 0; i < nodeCount; i++) {
+                nodeList.add(new Node(nodeIds[i], nodeX[i], nodeY[i], nodeTypes[i]));
+            }
+        }
         return nodeList;
     }
 
+    /**
+     * @return The parsed requests, in the order of the file; the list is built on the first call.
+     */
     public List<Request> getRequestList() {
+        if (requestList == null) {
+            requestList = new ArrayList<>(requestCount);
+            for (int r = 0; r < requestCount; r++) {
+                requestList.add(new Request(requestQuantities[r], requestNodes[r], requestIds[r]));
+            }
+        }
         return requestList;
     }
+
     public List<Vehicule> getVehicleList() {
         return vehiculeList;
     }
-}
\ No newline at end of file
+
+    /**
+     * Builds (once) the immutable array-based {@link Instance} from the parsed nodes, requests and vehicles.
+     * Nodes keep the order of the file, the demand of a node is the sum of its requests and the
+     * depot is the node of type 0.
+     *
+     * @return The parsed instance.
+     */
+    public Instance getInstance() {
+        if (instance == null) {
+            int depotIndex = -1;
+            int maxId = 0;
+            for (int i = 0; i < nodeCount; i++) {
+                maxId = Math.max(maxId, nodeIds[i]);
+                if (nodeTypes[i] == 0 && depotIndex == -1) {
+                    depotIndex = i;
+                }
+            }
+            if (depotIndex == -1) {
+                throw new IllegalStateException("No depot node (type 0) in the parsed file");
+            }
+
+            int[] indexOf = new int[maxId + 1];
+            Arrays.fill(indexOf, -1);
+            for (int i = 0; i < nodeCount; i++) {
+                if (nodeIds[i] >= 0) {
+                    indexOf[nodeIds[i]] = i;
+                }
+            }
+            double[] demand = new double[nodeCount];
+            for (int r = 0; r < requestCount; r++) {
+                int node = requestNodes[r];
+                if (node < 0 || node > maxId || indexOf[node] == -1) {
+                    throw new IllegalArgumentException(fileName + ": request " + requestIds[r] + " refers to unknown node " + node);
+                }
+                demand[indexOf[node]] += requestQuantities[r];
+            }
+
+            double capacity = vehiculeList.isEmpty() ? Double.MAX_VALUE : vehiculeList.getFirst().getCapacityInitial();
+            instance = new Instance(instanceName, Arrays.copyOf(nodeIds, nodeCount), Arrays.copyOf(nodeX, nodeCount),
+                    Arrays.copyOf(nodeY, nodeCount), demand, depotIndex, capacity);
+        }
+        return instance;
+    }
+}